@@ -17,17 +17,24 @@
 //
 package org.msgpack;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import org.msgpack.io.ChunkPool;
 import org.msgpack.template.Template;
+import org.msgpack.template.TemplateLookupCache;
 import org.msgpack.template.TemplateRegistry;
 import org.msgpack.packer.Packer;
 import org.msgpack.packer.BufferPacker;
 import org.msgpack.packer.MessagePackPacker;
 import org.msgpack.packer.MessagePackBufferPacker;
+import org.msgpack.packer.SizeCalculatingPacker;
 import org.msgpack.packer.Unconverter;
 import org.msgpack.unpacker.Unpacker;
 import org.msgpack.unpacker.BufferUnpacker;
@@ -50,8 +57,12 @@ import org.msgpack.type.Value;
  * 
  */
 public class MessagePack {
+    private static final int DEFAULT_STREAM_BUFFER_SIZE = 8192;
+
     private TemplateRegistry registry;
 
+    private ChunkPool chunkPool;
+
     /**
      * 
      * @since 0.6.0
@@ -67,6 +78,7 @@ public class MessagePack {
      */
     public MessagePack(MessagePack msgpack) {
         registry = new TemplateRegistry(msgpack.registry);
+        chunkPool = msgpack.chunkPool;
     }
 
     protected MessagePack(TemplateRegistry registry) {
@@ -82,9 +94,30 @@ public class MessagePack {
         registry.setClassLoader(cl);
     }
 
+    /**
+     * Sets the pool that buffer serializers and deserializers created
+     * afterwards take their chunks from. Raw values read from fed buffers are
+     * copied out of pooled chunks instead of referring to them. If it is
+     * null (default), chunks are allocated and dropped for the GC.
+     * 
+     * @since 0.6.8
+     * @param pool
+     *            chunk pool, such as {@link org.msgpack.io.ThreadLocalChunkPool}
+     */
+    public void setChunkPool(ChunkPool pool) {
+        this.chunkPool = pool;
+    }
+
+    public ChunkPool getChunkPool() {
+        return chunkPool;
+    }
+
     /**
      * Returns serializer that enables serializing objects into
-     * {@link java.io.OutputStream} object.
+     * {@link java.io.OutputStream} object. The serializer buffers the
+     * pieces of an object and writes each top-level object to <tt>out</tt>
+     * when it is complete. {@link Packer#flush()} also flushes <tt>out</tt>
+     * itself.
      * 
      * @since 0.6.0
      * @param out
@@ -92,7 +125,56 @@ public class MessagePack {
      * @return stream-based serializer
      */
     public Packer createPacker(OutputStream out) {
-        return new MessagePackPacker(this, out);
+        return createPacker(out, DEFAULT_STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns serializer that enables serializing objects into
+     * {@link java.io.OutputStream} object through a buffer of the specified
+     * size. If <tt>bufferSize</tt> is 0, every write goes to <tt>out</tt>
+     * immediately.
+     * 
+     * @since 0.6.8
+     * @param out
+     *            output stream
+     * @param bufferSize
+     *            size of write buffer
+     * @return stream-based serializer
+     */
+    public Packer createPacker(OutputStream out, int bufferSize) {
+        return new MessagePackPacker(this, out, bufferSize);
+    }
+
+    /**
+     * Returns serializer that enables serializing objects into
+     * {@link java.nio.channels.WritableByteChannel} object. Each top-level
+     * object is written with one gathering write, and large
+     * <tt>byte[]</tt> and direct <tt>ByteBuffer</tt> values are written
+     * without copying. The channel must be in blocking mode;
+     * IllegalBlockingModeException is thrown for a non-blocking channel.
+     * 
+     * @since 0.6.8
+     * @param channel
+     *            writable channel
+     * @return channel-based serializer
+     */
+    public Packer createPacker(WritableByteChannel channel) {
+        return new MessagePackPacker(this, channel, DEFAULT_STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a serializer that writes directly into <tt>buffer</tt> from its
+     * position. The buffer never grows; BufferOverflowException is thrown
+     * when an object does not fit. {@link #encodedSize(Object)} gives the
+     * space needed.
+     * 
+     * @since 0.6.8
+     * @param buffer
+     *            output buffer
+     * @return packer
+     */
+    public Packer createPacker(ByteBuffer buffer) {
+        return new MessagePackPacker(this, buffer);
     }
 
     /**
@@ -119,7 +201,9 @@ public class MessagePack {
 
     /**
      * Returns deserializer that enables deserializing
-     * {@link java.io.InputStream} object.
+     * {@link java.io.InputStream} object. The deserializer reads ahead from
+     * the stream, so bytes following the last deserialized object may already
+     * be consumed from <tt>in</tt>.
      * 
      * @since 0.6.0
      * @param in
@@ -127,7 +211,61 @@ public class MessagePack {
      * @return stream-based deserializer
      */
     public Unpacker createUnpacker(InputStream in) {
-        return new MessagePackUnpacker(this, in);
+        return createUnpacker(in, DEFAULT_STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns deserializer that enables deserializing
+     * {@link java.io.InputStream} object with a read-ahead buffer of the
+     * specified size. If <tt>bufferSize</tt> is 0, the deserializer reads no
+     * more bytes from the stream than it deserializes.
+     * 
+     * @since 0.6.8
+     * @param in
+     *            input stream
+     * @param bufferSize
+     *            size of read-ahead buffer
+     * @return stream-based deserializer
+     */
+    public Unpacker createUnpacker(InputStream in, int bufferSize) {
+        return new MessagePackUnpacker(this, in, bufferSize);
+    }
+
+    /**
+     * Returns deserializer that reads the file from the current position of
+     * <tt>channel</tt> through a read-only memory mapping. Raw values refer
+     * to the mapping without copying. Closing the deserializer closes
+     * <tt>channel</tt>.
+     * 
+     * @since 0.6.8
+     * @param channel
+     *            file channel
+     * @return file-based deserializer
+     */
+    public Unpacker createUnpacker(FileChannel channel) throws IOException {
+        return new MessagePackUnpacker(this, channel);
+    }
+
+    /**
+     * Returns deserializer that reads <tt>file</tt> through a read-only
+     * memory mapping.
+     * 
+     * @since 0.6.8
+     * @param file
+     *            file to read
+     * @return file-based deserializer
+     */
+    public Unpacker createUnpacker(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return createUnpacker(raf.getChannel());
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        } catch (RuntimeException e) {
+            raf.close();
+            throw e;
+        }
     }
 
     /**
@@ -195,7 +333,9 @@ public class MessagePack {
             Template<T> tmpl = registry.lookup(v.getClass());
             tmpl.write(pk, v);
         }
-        return pk.toByteArray();
+        byte[] bytes = pk.toByteArray();
+        pk.close();
+        return bytes;
     }
 
     /**
@@ -211,7 +351,9 @@ public class MessagePack {
     public <T> byte[] write(T v, Template<T> template) throws IOException {
         BufferPacker pk = createBufferPacker();
         template.write(pk, v);
-        return pk.toByteArray();
+        byte[] bytes = pk.toByteArray();
+        pk.close();
+        return bytes;
     }
 
     /**
@@ -233,6 +375,7 @@ public class MessagePack {
             Template<T> tmpl = registry.lookup(v.getClass());
             tmpl.write(pk, v);
         }
+        pk.flush();
     }
 
     /**
@@ -251,6 +394,87 @@ public class MessagePack {
             throws IOException {
         Packer pk = createPacker(out);
         template.write(pk, v);
+        pk.flush();
+    }
+
+    /**
+     * Serializes specified object into <tt>buffer</tt> from its position,
+     * which is advanced past the written bytes.
+     * 
+     * @since 0.6.8
+     * @param buffer
+     *            output buffer
+     * @param v
+     *            serialized object
+     * @throws IOException
+     */
+    public <T> void write(ByteBuffer buffer, T v) throws IOException {
+        Packer pk = createPacker(buffer);
+        if (v == null) {
+            pk.writeNil();
+        } else {
+            @SuppressWarnings("unchecked")
+            Template<T> tmpl = registry.lookup(v.getClass());
+            tmpl.write(pk, v);
+        }
+    }
+
+    /**
+     * Serializes object into <tt>buffer</tt> by specified template.
+     * 
+     * @since 0.6.8
+     * @param buffer
+     *            output buffer
+     * @param v
+     *            serialized object
+     * @param template
+     *            serializer/deserializer for the object
+     * @throws IOException
+     */
+    public <T> void write(ByteBuffer buffer, T v, Template<T> template)
+            throws IOException {
+        Packer pk = createPacker(buffer);
+        template.write(pk, v);
+    }
+
+    /**
+     * Returns the exact length of the serialized form of specified object
+     * without serializing it.
+     * 
+     * @since 0.6.8
+     * @param v
+     *            object
+     * @return length in bytes
+     * @throws IOException
+     */
+    public <T> long encodedSize(T v) throws IOException {
+        SizeCalculatingPacker pk = new SizeCalculatingPacker(this);
+        if (v == null) {
+            pk.writeNil();
+        } else {
+            @SuppressWarnings("unchecked")
+            Template<T> tmpl = registry.lookup(v.getClass());
+            tmpl.write(pk, v);
+        }
+        return pk.getSize();
+    }
+
+    /**
+     * Returns the exact length of the serialized form of specified object
+     * written by specified template.
+     * 
+     * @since 0.6.8
+     * @param v
+     *            object
+     * @param template
+     *            serializer/deserializer for the object
+     * @return length in bytes
+     * @throws IOException
+     */
+    public <T> long encodedSize(T v, Template<T> template) throws IOException {
+        SizeCalculatingPacker pk = new SizeCalculatingPacker(this);
+        template.write(pk, v);
+        return pk.getSize();
     }
 
     /**
@@ -266,7 +490,9 @@ public class MessagePack {
         // FIXME ValueTemplate should do this
         BufferPacker pk = createBufferPacker();
         pk.write(v);
-        return pk.toByteArray();
+        byte[] bytes = pk.toByteArray();
+        pk.close();
+        return bytes;
     }
 
     /**
@@ -321,7 +547,7 @@ public class MessagePack {
      * @throws IOException
      */
     public Value read(InputStream in) throws IOException {
-        return createUnpacker(in).readValue();
+        return createUnpacker(in, 0).readValue();
     }
 
     /**
@@ -523,7 +749,8 @@ public class MessagePack {
      * @throws IOException
      */
     public <T> T read(InputStream in, T v, Template<T> tmpl) throws IOException {
-        Unpacker u = createUnpacker(in);
+        // no read-ahead: the stream may hold more data after this object
+        Unpacker u = createUnpacker(in, 0);
         return tmpl.read(u, v);
     }
 
@@ -641,6 +868,16 @@ public class MessagePack {
         return registry.lookup(type);
     }
 
+    /**
+     * Returns a new cache of the templates of the few classes that one call
+     * site writes, which falls back to {@link #lookup(Type)}.
+     * 
+     * @return lookup cache
+     */
+    public TemplateLookupCache createTemplateLookupCache() {
+        return new TemplateLookupCache(registry);
+    }
+
     private static final MessagePack globalMessagePack = new MessagePack();
 
     /**
@@ -33,6 +33,12 @@ abstract class AbstractInput implements Input {
         readByteCount += size;
     }
 
+    // the count wraps around like an int, as it does when the same bytes are
+    // read in smaller steps
+    protected final void incrReadByteCount(long size) {
+        readByteCount += size;
+    }
+
     protected final void incrReadOneByteCount() {
         readByteCount += 1;
     }
@@ -0,0 +1,202 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.IOException;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * Input over a single contiguous byte array. Used by wrap() where the whole
+ * message is already in memory, so headers and big-endian primitives are
+ * decoded by indexing the array directly.
+ */
+public class ArrayBufferInput extends AbstractInput {
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    private int nextAdvance;
+
+    private ByteBuffer referBuffer;
+
+    // heap buffer given to wrap(ByteBuffer); its position follows ours
+    private ByteBuffer source;
+
+    private int sourceOffset;
+
+    public ArrayBufferInput() {
+        this.buffer = EMPTY_BUFFER;
+    }
+
+    public void wrap(byte[] b, int off, int len) {
+        if (buffer != b) {
+            referBuffer = null;
+        }
+        buffer = b;
+        position = off;
+        limit = off + len;
+        nextAdvance = 0;
+        source = null;
+    }
+
+    public void wrap(ByteBuffer bb) {
+        wrap(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        source = bb;
+        sourceOffset = bb.arrayOffset();
+    }
+
+    private void syncSource() {
+        if (source != null) {
+            source.position(position - sourceOffset);
+        }
+    }
+
+    public int read(byte[] b, int off, int len) throws EOFException {
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        incrReadByteCount(n);
+        syncSource();
+        return n;
+    }
+
+    public boolean tryRefer(BufferReferer ref, int len) throws IOException {
+        if (position == limit) {
+            throw new EndOfBufferException();
+        } else if (limit - position < len) {
+            return false;
+        }
+        if (referBuffer == null) {
+            referBuffer = ByteBuffer.wrap(buffer);
+        }
+        referBuffer.limit(position + len);
+        referBuffer.position(position);
+        ref.refer(referBuffer, true);
+        position += len;
+        incrReadByteCount(len);
+        syncSource();
+        return true;
+    }
+
+    public void skip(long n) throws EOFException {
+        if (limit - position < n) {
+            throw new EndOfBufferException();
+        }
+        position += (int) n;
+        incrReadByteCount((int) n);
+        syncSource();
+    }
+
+    public byte readByte() throws EOFException {
+        if (position == limit) {
+            throw new EndOfBufferException();
+        }
+        incrReadOneByteCount();
+        byte b = buffer[position++];
+        syncSource();
+        return b;
+    }
+
+    public void advance() {
+        position += nextAdvance;
+        incrReadByteCount(nextAdvance);
+        nextAdvance = 0;
+        syncSource();
+    }
+
+    private int require(int n) throws EOFException {
+        if (limit - position < n) {
+            throw new EndOfBufferException();
+        }
+        nextAdvance = n;
+        return position;
+    }
+
+    public byte getByte() throws EOFException {
+        return buffer[require(1)];
+    }
+
+    public short getShort() throws EOFException {
+        int p = require(2);
+        return (short) (((buffer[p] & 0xff) << 8) | (buffer[p + 1] & 0xff));
+    }
+
+    public int getInt() throws EOFException {
+        int p = require(4);
+        return getInt(buffer, p);
+    }
+
+    public long getLong() throws EOFException {
+        int p = require(8);
+        return ((long) getInt(buffer, p) << 32)
+                | (getInt(buffer, p + 4) & 0xffffffffL);
+    }
+
+    public float getFloat() throws EOFException {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    public double getDouble() throws EOFException {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    private static int getInt(byte[] b, int p) {
+        return ((b[p] & 0xff) << 24) | ((b[p + 1] & 0xff) << 16)
+                | ((b[p + 2] & 0xff) << 8) | (b[p + 3] & 0xff);
+    }
+
+    /**
+     * Hands the unread bytes over to <tt>dst</tt> by reference and leaves
+     * this input empty. It is used when more data is fed to a wrapped buffer.
+     */
+    public void moveTo(LinkedBufferInput dst) {
+        dst.clear();
+        if (position < limit) {
+            dst.feed(buffer, position, limit - position, true);
+        }
+        clear();
+    }
+
+    public void copyReferencedBuffer() {
+        int size = limit - position;
+        byte[] copy = new byte[size];
+        System.arraycopy(buffer, position, copy, 0, size);
+        wrap(copy, 0, size);
+    }
+
+    public int getSize() {
+        return limit - position;
+    }
+
+    public void clear() {
+        buffer = EMPTY_BUFFER;
+        referBuffer = null;
+        source = null;
+        position = 0;
+        limit = 0;
+        nextAdvance = 0;
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,263 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output into a single byte array that grows geometrically. clear() keeps
+ * the array, so a reused serializer stops allocating once the array fits
+ * its messages. The array and the views of it are valid until the next
+ * write or clear().
+ * <p>
+ * With a {@link ChunkPool}, the array is taken from the pool and returned to
+ * it by close(). Arrays outgrown before then are left to the GC.
+ */
+public class ArrayBufferOutput implements Output {
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    private final ChunkPool pool;
+
+    private final int initialSize;
+
+    private byte[] buffer;
+
+    private int length;
+
+    public ArrayBufferOutput(int initialSize) {
+        this(initialSize, null);
+    }
+
+    /**
+     * @param pool
+     *            pool that the array is taken from and returned to on close(),
+     *            or null
+     */
+    public ArrayBufferOutput(int initialSize, ChunkPool pool) {
+        if (initialSize < 9) {
+            initialSize = 9;
+        }
+        this.pool = pool;
+        this.initialSize = initialSize;
+        this.buffer = allocate(initialSize);
+    }
+
+    private byte[] allocate(int size) {
+        if (pool == null) {
+            return new byte[size];
+        }
+        return pool.allocate(size);
+    }
+
+    private void reserve(int len) {
+        if (buffer.length - length >= len) {
+            return;
+        }
+        int size = Math.max(Math.max(buffer.length * 2, length + len), initialSize);
+        byte[] grown = allocate(size);
+        System.arraycopy(buffer, 0, grown, 0, length);
+        buffer = grown;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        reserve(len);
+        System.arraycopy(b, off, buffer, length, len);
+        length += len;
+    }
+
+    @Override
+    public void write(ByteBuffer bb) throws IOException {
+        int len = bb.remaining();
+        reserve(len);
+        bb.get(buffer, length, len);
+        length += len;
+    }
+
+    @Override
+    public void writeByte(byte v) throws IOException {
+        reserve(1);
+        buffer[length++] = v;
+    }
+
+    @Override
+    public void writeShort(short v) throws IOException {
+        reserve(2);
+        putShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        reserve(4);
+        putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        reserve(8);
+        putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        reserve(4);
+        putInt(Float.floatToRawIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        reserve(8);
+        putLong(Double.doubleToRawLongBits(v));
+    }
+
+    @Override
+    public void writeByteAndByte(byte b, byte v) throws IOException {
+        reserve(2);
+        buffer[length++] = b;
+        buffer[length++] = v;
+    }
+
+    @Override
+    public void writeByteAndShort(byte b, short v) throws IOException {
+        reserve(3);
+        buffer[length++] = b;
+        putShort(v);
+    }
+
+    @Override
+    public void writeByteAndInt(byte b, int v) throws IOException {
+        reserve(5);
+        buffer[length++] = b;
+        putInt(v);
+    }
+
+    @Override
+    public void writeByteAndLong(byte b, long v) throws IOException {
+        reserve(9);
+        buffer[length++] = b;
+        putLong(v);
+    }
+
+    @Override
+    public void writeByteAndFloat(byte b, float v) throws IOException {
+        reserve(5);
+        buffer[length++] = b;
+        putInt(Float.floatToRawIntBits(v));
+    }
+
+    @Override
+    public void writeByteAndDouble(byte b, double v) throws IOException {
+        reserve(9);
+        buffer[length++] = b;
+        putLong(Double.doubleToRawLongBits(v));
+    }
+
+    @Override
+    public void writeUTF8(CharSequence s, int len) throws IOException {
+        reserve(len);
+        length = Utf8.encode(s, buffer, length);
+    }
+
+    private void putShort(short v) {
+        buffer[length] = (byte) (v >> 8);
+        buffer[length + 1] = (byte) v;
+        length += 2;
+    }
+
+    private void putInt(int v) {
+        buffer[length] = (byte) (v >> 24);
+        buffer[length + 1] = (byte) (v >> 16);
+        buffer[length + 2] = (byte) (v >> 8);
+        buffer[length + 3] = (byte) v;
+        length += 4;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >> 32));
+        putInt((int) v);
+    }
+
+    /**
+     * Replaces the <tt>len</tt> bytes at <tt>position</tt> with <tt>blen</tt>
+     * bytes of <tt>b</tt> and moves the following bytes accordingly. It fixes
+     * up headers written before their values were known.
+     */
+    public void replace(int position, int len, byte[] b, int off, int blen) {
+        if (blen != len) {
+            if (blen > len) {
+                reserve(blen - len);
+            }
+            System.arraycopy(buffer, position + len, buffer, position + blen,
+                    length - position - len);
+            length += blen - len;
+        }
+        System.arraycopy(b, off, buffer, position, blen);
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Returns a view of the written bytes without copying.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Returns the array whose first {@link #getSize()} bytes are the written
+     * bytes.
+     */
+    public byte[] getArray() {
+        return buffer;
+    }
+
+    public int getSize() {
+        return length;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Returns the array to the pool, if any. The output can still be
+     * written afterwards and takes a new array for it.
+     */
+    @Override
+    public void close() {
+        if (pool != null && buffer.length > 0) {
+            pool.release(buffer);
+        }
+        buffer = EMPTY_BUFFER;
+        length = 0;
+    }
+}
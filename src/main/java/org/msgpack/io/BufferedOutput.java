@@ -34,19 +34,26 @@ abstract class BufferedOutput implements Output {
     }
 
     private void allocateNewBuffer() {
-        buffer = new byte[bufferSize];
+        buffer = newBuffer();
         castByteBuffer = ByteBuffer.wrap(buffer);
     }
 
+    /**
+     * Returns a new buffer. Its length may differ from
+     * <tt>bufferSize</tt>.
+     */
+    protected byte[] newBuffer() {
+        return new byte[bufferSize];
+    }
+
     private void reserve(int len) throws IOException {
         if (buffer == null) {
             allocateNewBuffer();
             return;
         }
-        if (bufferSize - filled < len) {
+        if (buffer.length - filled < len) {
             if (!flushBuffer(buffer, 0, filled)) {
-                buffer = new byte[bufferSize];
-                castByteBuffer = ByteBuffer.wrap(buffer);
+                allocateNewBuffer();
             }
             filled = 0;
         }
@@ -61,10 +68,10 @@ abstract class BufferedOutput implements Output {
             }
             allocateNewBuffer();
         }
-        if (len <= bufferSize - filled) {
+        if (len <= buffer.length - filled) {
             System.arraycopy(b, off, buffer, filled, len);
             filled += len;
-        } else if (len <= bufferSize) {
+        } else if (len <= buffer.length) {
             if (!flushBuffer(buffer, 0, filled)) {
                 allocateNewBuffer();
             }
@@ -72,7 +79,7 @@ abstract class BufferedOutput implements Output {
             System.arraycopy(b, off, buffer, 0, len);
             filled = len;
         } else {
-            flush();
+            flushFilled();
             flushBuffer(b, off, len);
         }
     }
@@ -87,10 +94,10 @@ abstract class BufferedOutput implements Output {
             }
             allocateNewBuffer();
         }
-        if (len <= bufferSize - filled) {
+        if (len <= buffer.length - filled) {
             bb.get(buffer, filled, len);
             filled += len;
-        } else if (len <= bufferSize) {
+        } else if (len <= buffer.length) {
             if (!flushBuffer(buffer, 0, filled)) {
                 allocateNewBuffer();
             }
@@ -98,7 +105,7 @@ abstract class BufferedOutput implements Output {
             bb.get(buffer, 0, len);
             filled = len;
         } else {
-            flush();
+            flushFilled();
             flushByteBuffer(bb);
         }
     }
@@ -191,8 +198,25 @@ abstract class BufferedOutput implements Output {
         filled += 8;
     }
 
+    @Override
+    public void writeUTF8(CharSequence s, int length) throws IOException {
+        reserve(length);
+        if (buffer.length - filled < length) {
+            // longer than the buffer
+            byte[] b = Utf8.encode(s, length);
+            flushFilled();
+            flushBuffer(b, 0, length);
+            return;
+        }
+        filled = Utf8.encode(s, buffer, filled);
+    }
+
     @Override
     public void flush() throws IOException {
+        flushFilled();
+    }
+
+    protected void flushFilled() throws IOException {
         if (filled > 0) {
             if (!flushBuffer(buffer, 0, filled)) {
                 buffer = null;
@@ -0,0 +1,191 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.EOFException;
+
+/**
+ * Input that reads ahead from an InputStream into a refillable buffer.
+ * Headers and primitives are decoded from memory and raws that fit in the
+ * buffer are handed out through {@link #tryRefer(BufferReferer, int)}.
+ * Unlike {@link StreamInput}, it may consume bytes from the stream beyond the
+ * end of the last object read.
+ */
+public class BufferedStreamInput extends AbstractInput {
+    private final InputStream in;
+
+    private final byte[] buffer;
+
+    private final ByteBuffer castByteBuffer;
+
+    private int position;
+
+    private int limit;
+
+    private int nextAdvance;
+
+    public BufferedStreamInput(InputStream in, int bufferSize) {
+        if (bufferSize < 8) {
+            bufferSize = 8;
+        }
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+        this.castByteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        int remain = len - n;
+        off += n;
+        if (remain > buffer.length) {
+            // large body: bypass the buffer
+            while (remain > 0) {
+                int r = in.read(b, off, remain);
+                if (r <= 0) {
+                    incrReadByteCount(len - remain);
+                    throw new EOFException();
+                }
+                remain -= r;
+                off += r;
+            }
+        } else if (remain > 0) {
+            fill(remain);
+            System.arraycopy(buffer, position, b, off, remain);
+            position += remain;
+        }
+        incrReadByteCount(len);
+        return len;
+    }
+
+    public boolean tryRefer(BufferReferer ref, int len) throws IOException {
+        if (len > buffer.length) {
+            return false;
+        }
+        fill(len);
+        castByteBuffer.limit(position + len);
+        castByteBuffer.position(position);
+        try {
+            ref.refer(castByteBuffer, false);
+        } finally {
+            castByteBuffer.clear();
+        }
+        position += len;
+        incrReadByteCount(len);
+        return true;
+    }
+
+    public void skip(long n) throws IOException {
+        int avail = limit - position;
+        if (n <= avail) {
+            position += (int) n;
+            incrReadByteCount((int) n);
+            return;
+        }
+        position = limit;
+        incrReadByteCount(avail);
+        long remain = n - avail;
+        while (remain > 0) {
+            long s = in.skip(remain);
+            if (s <= 0) {
+                // InputStream.skip may return 0 before EOF
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                s = 1;
+            }
+            incrReadByteCount(s);
+            remain -= s;
+        }
+    }
+
+    public byte readByte() throws IOException {
+        if (position == limit) {
+            fill(1);
+        }
+        incrReadOneByteCount();
+        return buffer[position++];
+    }
+
+    public void advance() {
+        position += nextAdvance;
+        incrReadByteCount(nextAdvance);
+        nextAdvance = 0;
+    }
+
+    /**
+     * Makes at least <tt>n</tt> bytes available from <tt>position</tt>,
+     * compacting the buffer and reading as much as the stream provides.
+     */
+    private void fill(int n) throws IOException {
+        int avail = limit - position;
+        if (avail >= n) {
+            return;
+        }
+        if (buffer.length - position < n) {
+            System.arraycopy(buffer, position, buffer, 0, avail);
+            position = 0;
+            limit = avail;
+        }
+        while (limit - position < n) {
+            int r = in.read(buffer, limit, buffer.length - limit);
+            if (r < 0) {
+                throw new EOFException();
+            }
+            limit += r;
+        }
+    }
+
+    private int require(int n) throws IOException {
+        fill(n);
+        nextAdvance = n;
+        return position;
+    }
+
+    public byte getByte() throws IOException {
+        return buffer[require(1)];
+    }
+
+    public short getShort() throws IOException {
+        return castByteBuffer.getShort(require(2));
+    }
+
+    public int getInt() throws IOException {
+        return castByteBuffer.getInt(require(4));
+    }
+
+    public long getLong() throws IOException {
+        return castByteBuffer.getLong(require(8));
+    }
+
+    public float getFloat() throws IOException {
+        return castByteBuffer.getFloat(require(4));
+    }
+
+    public double getDouble() throws IOException {
+        return castByteBuffer.getDouble(require(8));
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
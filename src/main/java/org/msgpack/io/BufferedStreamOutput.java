@@ -0,0 +1,79 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output that collects small writes in a buffer and hands it to an
+ * OutputStream when it fills up or {@link #drain()} is called. Raws larger
+ * than the buffer are written to the stream directly. {@link #flush()} writes
+ * the buffered bytes and flushes the stream.
+ */
+public class BufferedStreamOutput extends BufferedOutput implements DrainableOutput {
+    private final OutputStream out;
+
+    public BufferedStreamOutput(OutputStream out, int bufferSize) {
+        super(bufferSize);
+        this.out = out;
+    }
+
+    @Override
+    protected boolean flushBuffer(byte[] b, int off, int len)
+            throws IOException {
+        out.write(b, off, len);
+        return true;
+    }
+
+    @Override
+    protected void flushByteBuffer(ByteBuffer bb) throws IOException {
+        if (bb.hasArray()) {
+            super.flushByteBuffer(bb);
+            return;
+        }
+        // nothing is buffered here; copy through the buffer in pieces
+        byte[] b = buffer != null ? buffer : newBuffer();
+        while (bb.hasRemaining()) {
+            int n = Math.min(b.length, bb.remaining());
+            bb.get(b, 0, n);
+            out.write(b, 0, n);
+        }
+    }
+
+    @Override
+    public void drain() throws IOException {
+        super.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        super.flush();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.msgpack.io;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.BufferOverflowException;
 
 public class ByteBufferOutput implements Output {
@@ -29,6 +30,9 @@ public class ByteBufferOutput implements Output {
     private ByteBuffer buffer;
     private ExpandBufferCallback callback;
 
+    // msgpack is big-endian whatever the order of the caller's buffer is
+    private boolean swap;
+
     public ByteBufferOutput(ByteBuffer buffer) {
         this(buffer, null);
     }
@@ -36,6 +40,7 @@ public class ByteBufferOutput implements Output {
     public ByteBufferOutput(ByteBuffer buffer, ExpandBufferCallback callback) {
         this.buffer = buffer;
         this.callback = callback;
+        this.swap = buffer.order() != ByteOrder.BIG_ENDIAN;
     }
 
     private void reserve(int len) throws IOException {
@@ -46,6 +51,27 @@ public class ByteBufferOutput implements Output {
             throw new BufferOverflowException();
         }
         buffer = callback.call(buffer, len);
+        swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+    }
+
+    private void putShort(short v) {
+        buffer.putShort(swap ? Short.reverseBytes(v) : v);
+    }
+
+    private void putInt(int v) {
+        buffer.putInt(swap ? Integer.reverseBytes(v) : v);
+    }
+
+    private void putLong(long v) {
+        buffer.putLong(swap ? Long.reverseBytes(v) : v);
+    }
+
+    private void putFloat(float v) {
+        putInt(Float.floatToRawIntBits(v));
+    }
+
+    private void putDouble(double v) {
+        putLong(Double.doubleToRawLongBits(v));
     }
 
     @Override
@@ -69,31 +95,31 @@ public class ByteBufferOutput implements Output {
     @Override
     public void writeShort(short v) throws IOException {
         reserve(2);
-        buffer.putShort(v);
+        putShort(v);
     }
 
     @Override
     public void writeInt(int v) throws IOException {
         reserve(4);
-        buffer.putInt(v);
+        putInt(v);
     }
 
     @Override
     public void writeLong(long v) throws IOException {
         reserve(8);
-        buffer.putLong(v);
+        putLong(v);
     }
 
     @Override
     public void writeFloat(float v) throws IOException {
         reserve(4);
-        buffer.putFloat(v);
+        putFloat(v);
     }
 
     @Override
     public void writeDouble(double v) throws IOException {
         reserve(8);
-        buffer.putDouble(v);
+        putDouble(v);
     }
 
     @Override
@@ -107,35 +133,47 @@ public class ByteBufferOutput implements Output {
     public void writeByteAndShort(byte b, short v) throws IOException {
         reserve(3);
         buffer.put(b);
-        buffer.putShort(v);
+        putShort(v);
     }
 
     @Override
     public void writeByteAndInt(byte b, int v) throws IOException {
         reserve(5);
         buffer.put(b);
-        buffer.putInt(v);
+        putInt(v);
     }
 
     @Override
     public void writeByteAndLong(byte b, long v) throws IOException {
         reserve(9);
         buffer.put(b);
-        buffer.putLong(v);
+        putLong(v);
     }
 
     @Override
     public void writeByteAndFloat(byte b, float v) throws IOException {
         reserve(5);
         buffer.put(b);
-        buffer.putFloat(v);
+        putFloat(v);
     }
 
     @Override
     public void writeByteAndDouble(byte b, double v) throws IOException {
         reserve(9);
         buffer.put(b);
-        buffer.putDouble(v);
+        putDouble(v);
+    }
+
+    @Override
+    public void writeUTF8(CharSequence s, int length) throws IOException {
+        reserve(length);
+        if (buffer.hasArray()) {
+            int off = buffer.arrayOffset() + buffer.position();
+            Utf8.encode(s, buffer.array(), off);
+            buffer.position(buffer.position() + length);
+        } else {
+            buffer.put(Utf8.encode(s, length));
+        }
     }
 
     @Override
@@ -0,0 +1,183 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+/**
+ * Output to a blocking WritableByteChannel. Small writes are collected in
+ * buffers. Arrays larger than the buffer and direct ByteBuffers are queued
+ * by reference without copying. Everything queued goes to the channel in one
+ * gathering write when the output is drained or flushed. A referenced array
+ * or buffer must not be modified until then.
+ * <p>
+ * A selectable channel in non-blocking mode is rejected with
+ * IllegalBlockingModeException, as a write that accepts no bytes would be
+ * retried forever.
+ */
+public class ChannelOutput extends BufferedOutput implements DrainableOutput {
+    private static final int MAX_PENDING = 16;
+
+    // direct buffers of this size or more are queued instead of copied
+    private static final int MIN_REFERENCED_SIZE = 256;
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer[] pending = new ByteBuffer[MAX_PENDING];
+
+    private int pendingCount;
+
+    // own buffers in pending, reused once written
+    private final ArrayList<byte[]> used = new ArrayList<byte[]>();
+
+    private final ArrayList<byte[]> free = new ArrayList<byte[]>();
+
+    public ChannelOutput(WritableByteChannel channel, int bufferSize) {
+        super(bufferSize);
+        if (channel instanceof SelectableChannel
+                && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the length up to which arrays and heap buffers are copied.
+     * Longer ones are kept by reference until the output is drained.
+     */
+    public int getCopyLimit() {
+        return bufferSize;
+    }
+
+    @Override
+    protected byte[] newBuffer() {
+        if (!free.isEmpty()) {
+            return free.remove(free.size() - 1);
+        }
+        return super.newBuffer();
+    }
+
+    @Override
+    protected boolean flushBuffer(byte[] b, int off, int len)
+            throws IOException {
+        if (b == buffer) {
+            used.add(b);
+        }
+        if (len > 0) {
+            enqueue(ByteBuffer.wrap(b, off, len));
+        }
+        return false;
+    }
+
+    @Override
+    protected void flushByteBuffer(ByteBuffer bb) throws IOException {
+        enqueue(bb.slice());
+        bb.position(bb.limit());
+    }
+
+    @Override
+    public void write(ByteBuffer bb) throws IOException {
+        if (bb.isDirect() && bb.remaining() >= MIN_REFERENCED_SIZE) {
+            flushFilled();
+            flushByteBuffer(bb);
+        } else {
+            super.write(bb);
+        }
+    }
+
+    private void enqueue(ByteBuffer bb) throws IOException {
+        pending[pendingCount++] = bb;
+        if (pendingCount == MAX_PENDING) {
+            writePending();
+        }
+    }
+
+    private void writePending() throws IOException {
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gather = (GatheringByteChannel) channel;
+            int i = 0;
+            while (i < pendingCount) {
+                gather.write(pending, i, pendingCount - i);
+                while (i < pendingCount && !pending[i].hasRemaining()) {
+                    i++;
+                }
+            }
+        } else {
+            for (int i = 0; i < pendingCount; i++) {
+                while (pending[i].hasRemaining()) {
+                    channel.write(pending[i]);
+                }
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i] = null;
+        }
+        pendingCount = 0;
+        if (free.size() < MAX_PENDING) {
+            free.addAll(used);
+        }
+        used.clear();
+    }
+
+    /**
+     * Writes <tt>length</tt> bytes from the current position of <tt>in</tt>
+     * with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+     * after the bytes written so far.
+     */
+    public void transferFrom(FileChannel in, long length) throws IOException {
+        drain();
+        long position = in.position();
+        long end = position + length;
+        while (position < end) {
+            long n = in.transferTo(position, end - position, channel);
+            if (n <= 0 && position >= in.size()) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+        in.position(end);
+    }
+
+    @Override
+    public void drain() throws IOException {
+        flushFilled();
+        writePending();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -15,16 +15,18 @@
 //    See the License for the specific language governing permissions and
 //    limitations under the License.
 //
-package org.msgpack.unpacker;
+package org.msgpack.io;
 
-final class DoubleAccept extends Accept {
-    double value;
+/**
+ * Source of the byte arrays chained by {@link LinkedBufferInput} and of the
+ * array behind {@link ArrayBufferOutput}. Chunks are released when they are
+ * consumed, cleared or closed, and may be handed out again by allocate().
+ */
+public interface ChunkPool {
+    /**
+     * Returns an array of at least <tt>size</tt> bytes.
+     */
+    public byte[] allocate(int size);
 
-    void acceptFloat(float v) {
-        this.value = (double) v;
-    }
-
-    void acceptDouble(double v) {
-        this.value = v;
-    }
+    public void release(byte[] chunk);
 }
@@ -0,0 +1,41 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+final class ChunkSizes {
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private ChunkSizes() {
+    }
+
+    /**
+     * Returns the chunk size to use after observing <tt>observed</tt> bytes:
+     * <tt>min</tt> doubled until it fits them, up to 64 KB. It grows at once
+     * and shrinks by half at most.
+     */
+    static int adapt(int current, int observed, int min) {
+        int fit = min;
+        while (fit < observed && fit < MAX_CHUNK_SIZE) {
+            fit <<= 1;
+        }
+        if (fit < current) {
+            fit = Math.max(fit, current >> 1);
+        }
+        return Math.max(fit, min);
+    }
+}
@@ -0,0 +1,120 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Output that discards the bytes and only counts them. Strings are not
+ * encoded; their length computed by the packer is added.
+ */
+public class CountingOutput implements Output {
+    private long count;
+
+    public long getCount() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    @Override
+    public void write(ByteBuffer bb) {
+        count += bb.remaining();
+    }
+
+    @Override
+    public void writeByte(byte v) {
+        count += 1;
+    }
+
+    @Override
+    public void writeShort(short v) {
+        count += 2;
+    }
+
+    @Override
+    public void writeInt(int v) {
+        count += 4;
+    }
+
+    @Override
+    public void writeLong(long v) {
+        count += 8;
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        count += 4;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        count += 8;
+    }
+
+    @Override
+    public void writeByteAndByte(byte b, byte v) {
+        count += 2;
+    }
+
+    @Override
+    public void writeByteAndShort(byte b, short v) {
+        count += 3;
+    }
+
+    @Override
+    public void writeByteAndInt(byte b, int v) {
+        count += 5;
+    }
+
+    @Override
+    public void writeByteAndLong(byte b, long v) {
+        count += 9;
+    }
+
+    @Override
+    public void writeByteAndFloat(byte b, float v) {
+        count += 5;
+    }
+
+    @Override
+    public void writeByteAndDouble(byte b, double v) {
+        count += 9;
+    }
+
+    @Override
+    public void writeUTF8(CharSequence s, int length) {
+        count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() {
+    }
+}
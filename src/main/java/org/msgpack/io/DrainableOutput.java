@@ -15,13 +15,18 @@
 //    See the License for the specific language governing permissions and
 //    limitations under the License.
 //
-package org.msgpack.unpacker;
+package org.msgpack.io;
 
-final class ArrayAccept extends Accept {
-    int size;
+import java.io.IOException;
 
-    @Override
-    void acceptArray(int size) {
-        this.size = size;
-    }
+/**
+ * Output that holds written bytes until they are drained or flushed.
+ * MessagePackPacker drains it after each complete top-level value.
+ */
+public interface DrainableOutput extends Output {
+    /**
+     * Writes the held bytes to the underlying stream or channel without
+     * flushing it.
+     */
+    public void drain() throws IOException;
 }
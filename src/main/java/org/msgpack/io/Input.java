@@ -27,6 +27,12 @@ public interface Input extends Closeable {
 
     public byte readByte() throws IOException;
 
+    /**
+     * Discards the next <tt>n</tt> bytes. Buffer-based inputs either skip all
+     * of them or throw {@link EndOfBufferException} without consuming any.
+     */
+    public void skip(long n) throws IOException;
+
     public void advance();
 
     public byte getByte() throws IOException;
@@ -19,9 +19,12 @@ package org.msgpack.io;
 
 import java.io.IOException;
 import java.io.EOFException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.nio.ByteBuffer;
 
 public class LinkedBufferInput extends AbstractInput {
@@ -37,12 +40,54 @@ public class LinkedBufferInput extends AbstractInput {
 
     private final int bufferSize;
 
+    private final ChunkPool pool;
+
+    // chunks allocated from the pool, which may be reused once released
+    private final Set<ByteBuffer> owned;
+
+    private int chunkSize;
+
     public LinkedBufferInput(int bufferSize) {
+        this(bufferSize, null);
+    }
+
+    public LinkedBufferInput(int bufferSize, ChunkPool pool) {
         this.link = new LinkedList<ByteBuffer>();
         this.writable = -1;
         this.tmpBuffer = new byte[8];
         this.tmpByteBuffer = ByteBuffer.wrap(tmpBuffer);
         this.bufferSize = bufferSize;
+        this.pool = pool;
+        if (pool != null) {
+            this.owned = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        } else {
+            this.owned = null;
+        }
+        this.chunkSize = bufferSize;
+    }
+
+    private ByteBuffer allocate(int len) {
+        if (pool == null) {
+            return ByteBuffer.allocate(Math.max(len, bufferSize));
+        }
+        chunkSize = ChunkSizes.adapt(chunkSize, len, bufferSize);
+        ByteBuffer bb = ByteBuffer.wrap(pool.allocate(Math.max(len, chunkSize)));
+        owned.add(bb);
+        return bb;
+    }
+
+    private void release(ByteBuffer bb) {
+        if (pool != null && owned.remove(bb)) {
+            pool.release(bb.array());
+        }
+    }
+
+    private void releaseAll() {
+        if (pool != null) {
+            for (ByteBuffer bb : link) {
+                release(bb);
+            }
+        }
     }
 
     public int read(byte[] b, int off, int len) throws EOFException {
@@ -82,9 +127,17 @@ public class LinkedBufferInput extends AbstractInput {
         boolean success = false;
         int pos = bb.position();
         int lim = bb.limit();
+        // the last chunk is rewritten by later feeds if we own it, and
+        // pooled chunks are reused after they are consumed
+        boolean gift;
+        if (pool != null) {
+            gift = !owned.contains(bb);
+        } else {
+            gift = writable < 0 || bb != link.getLast();
+        }
         try {
             bb.limit(pos + len);
-            ref.refer(bb, true);
+            ref.refer(bb, gift);
             incrReadByteCount(len);
             success = true;
         } finally {
@@ -101,6 +154,26 @@ public class LinkedBufferInput extends AbstractInput {
         return true;
     }
 
+    public void skip(long n) throws EOFException {
+        if (getSize() < n) {
+            throw new EndOfBufferException();
+        }
+        long remain = n;
+        while (remain > 0) {
+            ByteBuffer bb = link.getFirst();
+            if (remain < bb.remaining()) {
+                bb.position(bb.position() + (int) remain);
+                break;
+            }
+            remain -= bb.remaining();
+            bb.position(bb.limit());
+            if (!removeFirstLink(bb)) {
+                break;
+            }
+        }
+        incrReadByteCount((int) n);
+    }
+
     public byte readByte() throws EOFException {
         ByteBuffer bb = null;
         try {
@@ -147,11 +220,11 @@ public class LinkedBufferInput extends AbstractInput {
                 writable = first.capacity();
                 return false;
             } else {
-                link.removeFirst();
+                release(link.removeFirst());
                 return false;
             }
         } else {
-            link.removeFirst();
+            release(link.removeFirst());
             return true;
         }
     }
@@ -271,13 +344,12 @@ public class LinkedBufferInput extends AbstractInput {
             writable = 0;
         }
 
-        int sz = Math.max(len, bufferSize);
-        ByteBuffer nb = ByteBuffer.allocate(sz);
+        ByteBuffer nb = allocate(len);
         nb.put(b, off, len);
         nb.limit(len);
         nb.position(0);
         link.addLast(nb);
-        writable = sz - len;
+        writable = nb.capacity() - len;
     }
 
     public void feed(ByteBuffer b) {
@@ -323,24 +395,25 @@ public class LinkedBufferInput extends AbstractInput {
             writable = 0;
         }
 
-        int sz = Math.max(rem, bufferSize);
-        ByteBuffer nb = ByteBuffer.allocate(sz);
+        ByteBuffer nb = allocate(rem);
         nb.put(buf);
         nb.limit(rem);
         nb.position(0);
         link.addLast(nb);
-        writable = sz - rem;
+        writable = nb.capacity() - rem;
     }
 
     public void clear() {
         if (writable >= 0) {
-            ByteBuffer bb = link.getLast();
+            ByteBuffer bb = link.removeLast();
+            releaseAll();
             link.clear();
             bb.position(0);
             bb.limit(0);
             link.addLast(bb);
             writable = bb.capacity();
         } else {
+            releaseAll();
             link.clear();
             writable = -1;
         }
@@ -368,6 +441,7 @@ public class LinkedBufferInput extends AbstractInput {
                 bb.get(copy, off, len);
                 off += len;
             }
+            releaseAll();
             link.clear();
             link.add(ByteBuffer.wrap(copy));
             link.add(last);
@@ -380,6 +454,7 @@ public class LinkedBufferInput extends AbstractInput {
                 bb.get(copy, off, len);
                 off += len;
             }
+            releaseAll();
             link.clear();
             link.add(ByteBuffer.wrap(copy));
             writable = 0;
@@ -0,0 +1,187 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.io.IOException;
+import java.io.EOFException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input over a file mapped into memory. The file is mapped in segments of
+ * at most <tt>segmentSize</tt> bytes, so files larger than 2 GB can be read.
+ * A segment is remapped at the current position when a header or a raw
+ * doesn't fit in its rest, and raws that fit in a segment are handed out as
+ * slices of the mapping through {@link #tryRefer(BufferReferer, int)}.
+ */
+public class MappedFileInput extends AbstractInput {
+    private static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final int segmentSize;
+
+    // file offset of the first byte of segment
+    private long segmentStart;
+
+    private MappedByteBuffer segment;
+
+    private int nextAdvance;
+
+    public MappedFileInput(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileInput(FileChannel channel, int segmentSize)
+            throws IOException {
+        if (segmentSize < 8) {
+            segmentSize = 8;
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+        map(channel.position());
+    }
+
+    private void map(long start) throws IOException {
+        long len = Math.min(segmentSize, size - start);
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+        segmentStart = start;
+    }
+
+    /**
+     * Makes at least <tt>n</tt> bytes available in the segment, remapping it
+     * at the current position if needed.
+     */
+    private void ensure(int n) throws IOException {
+        if (segment.remaining() >= n) {
+            return;
+        }
+        long pos = segmentStart + segment.position();
+        if (size - pos < n) {
+            throw new EOFException();
+        }
+        map(pos);
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        int remain = len;
+        while (remain > 0) {
+            if (!segment.hasRemaining()) {
+                ensure(1);
+            }
+            int n = Math.min(remain, segment.remaining());
+            segment.get(b, off, n);
+            incrReadByteCount(n);
+            off += n;
+            remain -= n;
+        }
+        return len;
+    }
+
+    public boolean tryRefer(BufferReferer ref, int len) throws IOException {
+        if (len > segmentSize) {
+            return false;
+        }
+        ensure(len);
+        int pos = segment.position();
+        int lim = segment.limit();
+        boolean success = false;
+        try {
+            segment.limit(pos + len);
+            // the mapping is read-only and never reused
+            ref.refer(segment, true);
+            success = true;
+        } finally {
+            segment.limit(lim);
+            segment.position(success ? pos + len : pos);
+        }
+        incrReadByteCount(len);
+        return true;
+    }
+
+    public void skip(long n) throws IOException {
+        long pos = segmentStart + segment.position();
+        if (size - pos < n) {
+            throw new EOFException();
+        }
+        if (n <= segment.remaining()) {
+            segment.position(segment.position() + (int) n);
+        } else {
+            map(pos + n);
+        }
+        incrReadByteCount(n);
+    }
+
+    public byte readByte() throws IOException {
+        if (!segment.hasRemaining()) {
+            ensure(1);
+        }
+        incrReadOneByteCount();
+        return segment.get();
+    }
+
+    public void advance() {
+        segment.position(segment.position() + nextAdvance);
+        incrReadByteCount(nextAdvance);
+        nextAdvance = 0;
+    }
+
+    // may remap the segment, so call it before reading the segment field
+    private int require(int n) throws IOException {
+        ensure(n);
+        nextAdvance = n;
+        return segment.position();
+    }
+
+    public byte getByte() throws IOException {
+        int p = require(1);
+        return segment.get(p);
+    }
+
+    public short getShort() throws IOException {
+        int p = require(2);
+        return segment.getShort(p);
+    }
+
+    public int getInt() throws IOException {
+        int p = require(4);
+        return segment.getInt(p);
+    }
+
+    public long getLong() throws IOException {
+        int p = require(8);
+        return segment.getLong(p);
+    }
+
+    public float getFloat() throws IOException {
+        int p = require(4);
+        return segment.getFloat(p);
+    }
+
+    public double getDouble() throws IOException {
+        int p = require(8);
+        return segment.getDouble(p);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
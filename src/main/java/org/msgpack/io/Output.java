@@ -50,4 +50,10 @@ public interface Output extends Closeable, Flushable {
     public void writeByteAndFloat(byte b, float v) throws IOException;
 
     public void writeByteAndDouble(byte b, double v) throws IOException;
+
+    /**
+     * Writes the UTF-8 encoding of <tt>s</tt>, which is <tt>length</tt>
+     * bytes long as computed by {@link Utf8#length(CharSequence)}.
+     */
+    public void writeUTF8(CharSequence s, int length) throws IOException;
 }
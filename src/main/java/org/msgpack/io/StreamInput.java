@@ -54,6 +54,22 @@ public class StreamInput extends AbstractInput {
         return false;
     }
 
+    public void skip(long n) throws IOException {
+        long remain = n;
+        while (remain > 0) {
+            long s = in.skip(remain);
+            if (s <= 0) {
+                // InputStream.skip may return 0 before EOF
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                s = 1;
+            }
+            incrReadByteCount(s);
+            remain -= s;
+        }
+    }
+
     public byte readByte() throws IOException {
         int n = in.read();
         if (n < 0) {
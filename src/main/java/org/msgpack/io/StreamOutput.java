@@ -23,8 +23,12 @@ import java.io.DataOutputStream;
 import java.nio.ByteBuffer;
 
 public class StreamOutput implements Output {
+    private static final int CHUNK_SIZE = 8192;
+
     private DataOutputStream out;
 
+    private byte[] chunk;
+
     public StreamOutput(OutputStream out) {
         this.out = new DataOutputStream(out);
     }
@@ -38,14 +42,19 @@ public class StreamOutput implements Output {
     public void write(ByteBuffer bb) throws IOException {
         if (bb.hasArray()) {
             byte[] array = bb.array();
-            int offset = bb.arrayOffset();
+            int offset = bb.arrayOffset() + bb.position();
             out.write(array, offset, bb.remaining());
             bb.position(bb.limit());
         } else {
-            // int pos = bb.position();
-            byte[] buf = new byte[bb.remaining()];
-            bb.get(buf);
-            out.write(buf);
+            // copy through a bounded chunk
+            if (chunk == null) {
+                chunk = new byte[CHUNK_SIZE];
+            }
+            while (bb.hasRemaining()) {
+                int n = Math.min(chunk.length, bb.remaining());
+                bb.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
         }
     }
 
@@ -115,6 +124,11 @@ public class StreamOutput implements Output {
         out.writeDouble(v);
     }
 
+    @Override
+    public void writeUTF8(CharSequence s, int length) throws IOException {
+        out.write(Utf8.encode(s, length));
+    }
+
     @Override
     public void flush() throws IOException {
     }
@@ -0,0 +1,90 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+import java.util.ArrayList;
+
+/**
+ * ChunkPool that keeps released chunks in per-thread free lists, one for
+ * each power-of-two size from 64 bytes to 64 KB. Larger chunks are not
+ * pooled. A chunk released by another thread joins that thread's lists.
+ */
+public class ThreadLocalChunkPool implements ChunkPool {
+    private static final int MIN_SHIFT = 6;
+
+    private static final int MAX_SHIFT = 16;
+
+    private static final int DEFAULT_MAX_CHUNKS = 32;
+
+    private final int maxChunks;
+
+    private final ThreadLocal<ArrayList<ArrayList<byte[]>>> lists =
+            new ThreadLocal<ArrayList<ArrayList<byte[]>>>() {
+        @Override
+        protected ArrayList<ArrayList<byte[]>> initialValue() {
+            ArrayList<ArrayList<byte[]>> l = new ArrayList<ArrayList<byte[]>>();
+            for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+                l.add(new ArrayList<byte[]>());
+            }
+            return l;
+        }
+    };
+
+    public ThreadLocalChunkPool() {
+        this(DEFAULT_MAX_CHUNKS);
+    }
+
+    /**
+     * @param maxChunks
+     *            number of free chunks kept for each size by each thread
+     */
+    public ThreadLocalChunkPool(int maxChunks) {
+        this.maxChunks = maxChunks;
+    }
+
+    private static int shift(int size) {
+        if (size <= (1 << MIN_SHIFT)) {
+            return MIN_SHIFT;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    public byte[] allocate(int size) {
+        int shift = shift(size);
+        if (shift > MAX_SHIFT) {
+            return new byte[size];
+        }
+        ArrayList<byte[]> free = lists.get().get(shift - MIN_SHIFT);
+        if (!free.isEmpty()) {
+            return free.remove(free.size() - 1);
+        }
+        return new byte[1 << shift];
+    }
+
+    public void release(byte[] chunk) {
+        int len = chunk.length;
+        if (len < (1 << MIN_SHIFT) || len > (1 << MAX_SHIFT)
+                || (len & (len - 1)) != 0) {
+            return;
+        }
+        ArrayList<byte[]> free = lists.get().get(shift(len) - MIN_SHIFT);
+        if (free.size() < maxChunks) {
+            free.add(chunk);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.io;
+
+/**
+ * UTF-8 encoder for {@link Output} implementations. Like
+ * String#getBytes("UTF-8"), it encodes an unpaired surrogate as '?'.
+ */
+public final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(CharSequence, byte[], int)}
+     * writes for <tt>s</tt>.
+     */
+    public static int length(CharSequence s) {
+        final int len = s.length();
+        int n = len;
+        int i = 0;
+        while (i < len && s.charAt(i) < 0x80) {
+            i++;
+        }
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                n += 1;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                n += 2;
+            } else if (isPair(s, i, len)) {
+                // 4 bytes for 2 chars
+                n += 2;
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Encodes <tt>s</tt> into <tt>b</tt> from <tt>off</tt>, which must have
+     * room for {@link #length(CharSequence)} bytes, and returns the offset
+     * following the last byte written.
+     */
+    public static int encode(CharSequence s, byte[] b, int off) {
+        final int len = s.length();
+        int i = 0;
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            b[off++] = (byte) c;
+        }
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[off++] = (byte) c;
+            } else if (c < 0x800) {
+                b[off++] = (byte) (0xc0 | (c >> 6));
+                b[off++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                b[off++] = (byte) (0xe0 | (c >> 12));
+                b[off++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[off++] = (byte) (0x80 | (c & 0x3f));
+            } else if (isPair(s, i, len)) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[off++] = (byte) (0xf0 | (cp >> 18));
+                b[off++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[off++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[off++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                b[off++] = (byte) '?';
+            }
+        }
+        return off;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of <tt>s</tt>, whose length is
+     * <tt>length</tt> bytes.
+     */
+    public static byte[] encode(CharSequence s, int length) {
+        byte[] b = new byte[length];
+        encode(s, b, 0);
+        return b;
+    }
+
+    private static boolean isPair(CharSequence s, int i, int len) {
+        return Character.isHighSurrogate(s.charAt(i)) && i + 1 < len
+                && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+}
@@ -19,14 +19,23 @@ package org.msgpack.packer;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import org.msgpack.type.Value;
+import org.msgpack.unpacker.MessagePackBufferUnpacker;
 import org.msgpack.MessagePack;
+import org.msgpack.MessageTypeException;
 import org.msgpack.template.Template;
+import org.msgpack.template.TemplateLookupCache;
 
 public abstract class AbstractPacker implements Packer {
     protected MessagePack msgpack;
 
+    // templates of the classes given to write(Object), created on first use
+    private TemplateLookupCache lookupCache;
+
     protected AbstractPacker(MessagePack msgpack) {
         this.msgpack = msgpack;
     }
@@ -168,11 +177,74 @@ public abstract class AbstractPacker implements Packer {
         if (o == null) {
             writeNil();
         } else {
+            checkBounds(o.length, off, len);
             writeByteArray(o, off, len);
         }
         return this;
     }
 
+    @Override
+    public Packer write(short[] o, int off, int len) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            checkBounds(o.length, off, len);
+            writeShortArray(o, off, len);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer write(int[] o, int off, int len) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            checkBounds(o.length, off, len);
+            writeIntArray(o, off, len);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer write(long[] o, int off, int len) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            checkBounds(o.length, off, len);
+            writeLongArray(o, off, len);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer write(float[] o, int off, int len) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            checkBounds(o.length, off, len);
+            writeFloatArray(o, off, len);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer write(double[] o, int off, int len) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            checkBounds(o.length, off, len);
+            writeDoubleArray(o, off, len);
+        }
+        return this;
+    }
+
+    // checked before the header is written, as nothing can be undone after
+    private static void checkBounds(int length, int off, int len) {
+        if ((off | len | (off + len) | (length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
     @Override
     public Packer write(ByteBuffer o) throws IOException {
         if (o == null) {
@@ -183,6 +255,42 @@ public abstract class AbstractPacker implements Packer {
         return this;
     }
 
+    @Override
+    public Packer writeRaw(InputStream in, long length) throws IOException {
+        checkRawLength(length, Integer.MAX_VALUE);
+        byte[] b = new byte[(int) length];
+        int off = 0;
+        while (off < b.length) {
+            int n = in.read(b, off, b.length - off);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+        }
+        writeByteArray(b);
+        return this;
+    }
+
+    @Override
+    public Packer writeRaw(FileChannel in, long length) throws IOException {
+        checkRawLength(length, Integer.MAX_VALUE);
+        ByteBuffer bb = ByteBuffer.allocate((int) length);
+        while (bb.hasRemaining()) {
+            if (in.read(bb) < 0) {
+                throw new EOFException();
+            }
+        }
+        bb.flip();
+        writeByteBuffer(bb);
+        return this;
+    }
+
+    protected static void checkRawLength(long length, long max) {
+        if (length < 0 || length > max) {
+            throw new IllegalArgumentException("Invalid raw length: " + length);
+        }
+    }
+
     @Override
     public Packer write(String o) throws IOException {
         if (o == null) {
@@ -193,13 +301,66 @@ public abstract class AbstractPacker implements Packer {
         return this;
     }
 
+    @Override
+    public Packer write(PreEncodedString o) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            writePreEncodedString(o);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer writePreEncoded(byte[] b) throws IOException {
+        return writePreEncoded(b, false);
+    }
+
+    @Override
+    public Packer writePreEncoded(byte[] b, boolean check) throws IOException {
+        if (b == null) {
+            writeNil();
+        } else {
+            writePreEncodedBuffer(ByteBuffer.wrap(b), check);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer writePreEncoded(ByteBuffer bb) throws IOException {
+        return writePreEncoded(bb, false);
+    }
+
+    @Override
+    public Packer writePreEncoded(ByteBuffer bb, boolean check) throws IOException {
+        if (bb == null) {
+            writeNil();
+        } else {
+            writePreEncodedBuffer(bb, check);
+        }
+        return this;
+    }
+
+    @Override
+    public Packer write(CharSequence o) throws IOException {
+        if (o == null) {
+            writeNil();
+        } else {
+            writeString(o);
+        }
+        return this;
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Override
     public Packer write(Object o) throws IOException {
         if (o == null) {
             writeNil();
         } else {
-            Template tmpl = msgpack.lookup(o.getClass());
+            if (lookupCache == null) {
+                lookupCache = msgpack.createTemplateLookupCache();
+            }
+            Template tmpl = lookupCache.lookup(o.getClass());
             tmpl.write(this, o);
         }
         return this;
@@ -215,6 +376,18 @@ public abstract class AbstractPacker implements Packer {
         return this;
     }
 
+    @Override
+    public Packer writeArrayBegin() throws IOException {
+        throw new UnsupportedOperationException(
+                "Arrays of unknown size need a buffer-based packer");
+    }
+
+    @Override
+    public Packer writeMapBegin() throws IOException {
+        throw new UnsupportedOperationException(
+                "Maps of unknown size need a buffer-based packer");
+    }
+
     @Override
     public Packer writeArrayEnd() throws IOException {
         writeArrayEnd(true);
@@ -253,7 +426,94 @@ public abstract class AbstractPacker implements Packer {
 
     abstract protected void writeByteArray(byte[] b, int off, int len) throws IOException;
 
+    protected void writeShortArray(short[] a, int off, int len) throws IOException {
+        writeArrayBegin(len);
+        for (int i = off; i < off + len; i++) {
+            writeShort(a[i]);
+        }
+        writeArrayEnd();
+    }
+
+    protected void writeIntArray(int[] a, int off, int len) throws IOException {
+        writeArrayBegin(len);
+        for (int i = off; i < off + len; i++) {
+            writeInt(a[i]);
+        }
+        writeArrayEnd();
+    }
+
+    protected void writeLongArray(long[] a, int off, int len) throws IOException {
+        writeArrayBegin(len);
+        for (int i = off; i < off + len; i++) {
+            writeLong(a[i]);
+        }
+        writeArrayEnd();
+    }
+
+    protected void writeFloatArray(float[] a, int off, int len) throws IOException {
+        writeArrayBegin(len);
+        for (int i = off; i < off + len; i++) {
+            writeFloat(a[i]);
+        }
+        writeArrayEnd();
+    }
+
+    protected void writeDoubleArray(double[] a, int off, int len) throws IOException {
+        writeArrayBegin(len);
+        for (int i = off; i < off + len; i++) {
+            writeDouble(a[i]);
+        }
+        writeArrayEnd();
+    }
+
     abstract protected void writeByteBuffer(ByteBuffer bb) throws IOException;
 
     abstract protected void writeString(String s) throws IOException;
+
+    protected void writeString(CharSequence s) throws IOException {
+        writeString(s.toString());
+    }
+
+    protected void writePreEncodedString(PreEncodedString s) throws IOException {
+        writeString(s.toString());
+    }
+
+    /**
+     * Writes an object given in MessagePack encoding. Packers for other
+     * formats decode it and write the value.
+     */
+    protected void writePreEncodedBuffer(ByteBuffer bb, boolean check) throws IOException {
+        MessagePackBufferUnpacker u = new MessagePackBufferUnpacker(msgpack);
+        u.wrap(bb.duplicate());
+        Value v;
+        try {
+            v = u.readValue();
+        } catch (EOFException e) {
+            throw new MessageTypeException("Pre-encoded object is truncated", e);
+        }
+        checkPreEncodedLength(u, bb.remaining());
+        v.writeTo(this);
+    }
+
+    /**
+     * Throws MessageTypeException unless <tt>bb</tt> holds exactly one
+     * object.
+     */
+    protected void checkPreEncoded(ByteBuffer bb) throws IOException {
+        MessagePackBufferUnpacker u = new MessagePackBufferUnpacker(msgpack);
+        u.wrap(bb.duplicate());
+        try {
+            u.skip();
+        } catch (EOFException e) {
+            throw new MessageTypeException("Pre-encoded object is truncated", e);
+        }
+        checkPreEncodedLength(u, bb.remaining());
+    }
+
+    private static void checkPreEncodedLength(MessagePackBufferUnpacker u, int length) {
+        if (u.getReadByteCount() != length) {
+            throw new MessageTypeException("Pre-encoded bytes hold more than one object: "
+                    + (length - u.getReadByteCount()) + " bytes left");
+        }
+    }
 }
@@ -17,6 +17,10 @@
 //
 package org.msgpack.packer;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * This class is buffer-specific serializer.
  * 
@@ -28,5 +32,29 @@ public interface BufferPacker extends Packer {
 
     public byte[] toByteArray();
 
+    /**
+     * Returns a view of the serialized bytes without copying. It is valid
+     * until the next write or {@link #clear()}.
+     */
+    public ByteBuffer toByteBuffer();
+
+    /**
+     * Writes the serialized bytes to <tt>out</tt> without copying.
+     */
+    public void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Returns the internal array whose first {@link #getBufferSize()} bytes
+     * are the serialized bytes. It is valid until the next write or
+     * {@link #clear()}.
+     */
+    public byte[] getBufferArray();
+
     public void clear();
+
+    /**
+     * Returns the internal array to the chunk pool, if one is set. Arrays
+     * and views returned before become invalid.
+     */
+    public void close() throws IOException;
 }
@@ -17,8 +17,12 @@
 //
 package org.msgpack.packer;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 import org.msgpack.MessagePack;
-import org.msgpack.io.LinkedBufferOutput;
+import org.msgpack.io.ArrayBufferOutput;
 
 public class MessagePackBufferPacker extends MessagePackPacker implements BufferPacker {
     private static final int DEFAULT_BUFFER_SIZE = 512;
@@ -28,19 +32,31 @@ public class MessagePackBufferPacker extends MessagePackPacker implements Buffer
     }
 
     public MessagePackBufferPacker(MessagePack msgpack, int bufferSize) {
-        super(msgpack, new LinkedBufferOutput(bufferSize));
+        super(msgpack, new ArrayBufferOutput(bufferSize, msgpack.getChunkPool()));
     }
 
     public int getBufferSize() {
-        return ((LinkedBufferOutput) out).getSize();
+        return ((ArrayBufferOutput) out).getSize();
     }
 
     public byte[] toByteArray() {
-        return ((LinkedBufferOutput) out).toByteArray();
+        return ((ArrayBufferOutput) out).toByteArray();
+    }
+
+    public ByteBuffer toByteBuffer() {
+        return ((ArrayBufferOutput) out).toByteBuffer();
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        ((ArrayBufferOutput) out).writeTo(stream);
+    }
+
+    public byte[] getBufferArray() {
+        return ((ArrayBufferOutput) out).getArray();
     }
 
     public void clear() {
         reset();
-        ((LinkedBufferOutput) out).clear();
+        ((ArrayBufferOutput) out).clear();
     }
 }
@@ -17,13 +17,22 @@
 //
 package org.msgpack.packer;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.math.BigInteger;
+import org.msgpack.io.ArrayBufferOutput;
+import org.msgpack.io.ByteBufferOutput;
 import org.msgpack.io.Output;
+import org.msgpack.io.BufferedStreamOutput;
+import org.msgpack.io.ChannelOutput;
+import org.msgpack.io.DrainableOutput;
 import org.msgpack.io.StreamOutput;
+import org.msgpack.io.Utf8;
 import org.msgpack.MessagePack;
 import org.msgpack.MessageTypeException;
 
@@ -32,13 +41,66 @@ public class MessagePackPacker extends AbstractPacker {
 
     private PackerStack stack = new PackerStack();
 
+    private final byte[] header = new byte[5];
+
+    // set when out holds bytes for a stream or channel; drained after each
+    // top-level value
+    private final DrainableOutput drainOut;
+
+    // arrays longer than this are kept by reference until out is drained,
+    // so they must not be reused before then
+    private final int retainedLength;
+
+    private static final int BULK_CHUNK_SIZE = 4096;
+
+    // primitive array elements are encoded here, then written at once; null
+    // after out kept it by reference
+    private byte[] bulkChunk;
+
     public MessagePackPacker(MessagePack msgpack, OutputStream stream) {
         this(msgpack, new StreamOutput(stream));
     }
 
+    public MessagePackPacker(MessagePack msgpack, OutputStream stream, int bufferSize) {
+        this(msgpack, newStreamOutput(stream, bufferSize));
+    }
+
+    public MessagePackPacker(MessagePack msgpack, WritableByteChannel channel, int bufferSize) {
+        this(msgpack, new ChannelOutput(channel, bufferSize));
+    }
+
+    /**
+     * Creates a packer that writes into <tt>buffer</tt> from its position.
+     * BufferOverflowException is thrown when it is full.
+     */
+    public MessagePackPacker(MessagePack msgpack, ByteBuffer buffer) {
+        this(msgpack, new ByteBufferOutput(buffer));
+    }
+
     protected MessagePackPacker(MessagePack msgpack, Output out) {
         super(msgpack);
         this.out = out;
+        this.drainOut = out instanceof DrainableOutput ? (DrainableOutput) out : null;
+        this.retainedLength = out instanceof ChannelOutput ?
+                ((ChannelOutput) out).getCopyLimit() : Integer.MAX_VALUE;
+    }
+
+    private void reduceCount() throws IOException {
+        stack.reduceCount();
+        drainIfTopLevel();
+    }
+
+    private void drainIfTopLevel() throws IOException {
+        if (drainOut != null && stack.getDepth() == 0) {
+            drainOut.drain();
+        }
+    }
+
+    private static Output newStreamOutput(OutputStream stream, int bufferSize) {
+        if (bufferSize <= 0) {
+            return new StreamOutput(stream);
+        }
+        return new BufferedStreamOutput(stream, bufferSize);
     }
 
     @Override
@@ -48,7 +110,7 @@ public class MessagePackPacker extends AbstractPacker {
         } else {
             out.writeByte(d);
         }
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
@@ -73,7 +135,7 @@ public class MessagePackPacker extends AbstractPacker {
                 out.writeByteAndShort((byte) 0xcd, d);
             }
         }
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
@@ -104,7 +166,7 @@ public class MessagePackPacker extends AbstractPacker {
                 out.writeByteAndInt((byte) 0xce, d);
             }
         }
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
@@ -149,18 +211,164 @@ public class MessagePackPacker extends AbstractPacker {
                 }
             }
         }
-        stack.reduceCount();
+        reduceCount();
+    }
+
+    @Override
+    protected void writeShortArray(short[] a, int off, int len) throws IOException {
+        writePrimitiveArray(a, off, len, 3);
+    }
+
+    @Override
+    protected void writeIntArray(int[] a, int off, int len) throws IOException {
+        writePrimitiveArray(a, off, len, 5);
+    }
+
+    @Override
+    protected void writeLongArray(long[] a, int off, int len) throws IOException {
+        writePrimitiveArray(a, off, len, 9);
+    }
+
+    @Override
+    protected void writeFloatArray(float[] a, int off, int len) throws IOException {
+        writePrimitiveArray(a, off, len, 5);
+    }
+
+    @Override
+    protected void writeDoubleArray(double[] a, int off, int len) throws IOException {
+        writePrimitiveArray(a, off, len, 9);
+    }
+
+    /**
+     * Writes the elements of a primitive array through the bulk chunk, as
+     * many as fit in it at once. <tt>maxSize</tt> is the longest encoding of
+     * an element.
+     */
+    private void writePrimitiveArray(Object a, int off, int len, int maxSize)
+            throws IOException {
+        writeArrayHeader(len);
+        int perChunk = BULK_CHUNK_SIZE / maxSize;
+        for (int i = off; i < off + len; i += perChunk) {
+            if (bulkChunk == null) {
+                bulkChunk = new byte[BULK_CHUNK_SIZE];
+            }
+            int p = encodeElements(a, i, Math.min(perChunk, off + len - i), bulkChunk);
+            out.write(bulkChunk, 0, p);
+            if (p > retainedLength) {
+                // out refers to the chunk until it is drained
+                bulkChunk = null;
+            }
+        }
+        reduceCount();
+    }
+
+    private static int encodeElements(Object a, int off, int n, byte[] b) {
+        int p = 0;
+        if (a instanceof int[]) {
+            int[] v = (int[]) a;
+            for (int i = off; i < off + n; i++) {
+                p = putLong(b, p, v[i]);
+            }
+        } else if (a instanceof long[]) {
+            long[] v = (long[]) a;
+            for (int i = off; i < off + n; i++) {
+                p = putLong(b, p, v[i]);
+            }
+        } else if (a instanceof double[]) {
+            double[] v = (double[]) a;
+            for (int i = off; i < off + n; i++) {
+                b[p] = (byte) 0xcb;
+                long d = Double.doubleToRawLongBits(v[i]);
+                p = putInt(b, putInt(b, p + 1, (int) (d >> 32)), (int) d);
+            }
+        } else if (a instanceof float[]) {
+            float[] v = (float[]) a;
+            for (int i = off; i < off + n; i++) {
+                b[p] = (byte) 0xca;
+                p = putInt(b, p + 1, Float.floatToRawIntBits(v[i]));
+            }
+        } else {
+            short[] v = (short[]) a;
+            for (int i = off; i < off + n; i++) {
+                p = putLong(b, p, v[i]);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Encodes <tt>d</tt> into <tt>b</tt> at <tt>p</tt> in the same format as
+     * writeLong, which int and short values share, and returns the position
+     * following it.
+     */
+    private static int putLong(byte[] b, int p, long d) {
+        if (d >= -(1L << 5) && d < (1 << 7)) {
+            // fixnum
+            b[p] = (byte) d;
+            return p + 1;
+        }
+        if (d < 0) {
+            if (d < -(1L << 15)) {
+                if (d < -(1L << 31)) {
+                    // signed 64
+                    b[p] = (byte) 0xd3;
+                    return putInt(b, putInt(b, p + 1, (int) (d >> 32)), (int) d);
+                }
+                // signed 32
+                b[p] = (byte) 0xd2;
+                return putInt(b, p + 1, (int) d);
+            }
+            if (d < -(1 << 7)) {
+                // signed 16
+                b[p] = (byte) 0xd1;
+                b[p + 1] = (byte) (d >> 8);
+                b[p + 2] = (byte) d;
+                return p + 3;
+            }
+            // signed 8
+            b[p] = (byte) 0xd0;
+            b[p + 1] = (byte) d;
+            return p + 2;
+        }
+        if (d < (1 << 8)) {
+            // unsigned 8
+            b[p] = (byte) 0xcc;
+            b[p + 1] = (byte) d;
+            return p + 2;
+        }
+        if (d < (1L << 16)) {
+            // unsigned 16
+            b[p] = (byte) 0xcd;
+            b[p + 1] = (byte) (d >> 8);
+            b[p + 2] = (byte) d;
+            return p + 3;
+        }
+        if (d < (1L << 32)) {
+            // unsigned 32
+            b[p] = (byte) 0xce;
+            return putInt(b, p + 1, (int) d);
+        }
+        // unsigned 64
+        b[p] = (byte) 0xcf;
+        return putInt(b, putInt(b, p + 1, (int) (d >> 32)), (int) d);
+    }
+
+    private static int putInt(byte[] b, int p, int v) {
+        b[p] = (byte) (v >> 24);
+        b[p + 1] = (byte) (v >> 16);
+        b[p + 2] = (byte) (v >> 8);
+        b[p + 3] = (byte) v;
+        return p + 4;
     }
 
     @Override
     protected void writeBigInteger(BigInteger d) throws IOException {
         if (d.bitLength() <= 63) {
             writeLong(d.longValue());
-            stack.reduceCount();
         } else if (d.bitLength() == 64 && d.signum() == 1) {
             // unsigned 64
             out.writeByteAndLong((byte) 0xcf, d.longValue());
-            stack.reduceCount();
+            reduceCount();
         } else {
             throw new MessageTypeException(
                     "MessagePack can't serialize BigInteger larger than (2^64)-1");
@@ -170,13 +378,13 @@ public class MessagePackPacker extends AbstractPacker {
     @Override
     protected void writeFloat(float d) throws IOException {
         out.writeByteAndFloat((byte) 0xca, d);
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
     protected void writeDouble(double d) throws IOException {
         out.writeByteAndDouble((byte) 0xcb, d);
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
@@ -188,7 +396,7 @@ public class MessagePackPacker extends AbstractPacker {
             // false
             out.writeByte((byte) 0xc2);
         }
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
@@ -202,7 +410,66 @@ public class MessagePackPacker extends AbstractPacker {
             out.writeByteAndInt((byte) 0xdb, len);
         }
         out.write(b, off, len);
-        stack.reduceCount();
+        reduceCount();
+    }
+
+    private static final int RAW_CHUNK_SIZE = 8192;
+
+    private void writeRawHeader(long length) throws IOException {
+        checkRawLength(length, 0xffffffffL);
+        if (length < 32) {
+            out.writeByte((byte) (0xa0 | length));
+        } else if (length < 65536) {
+            out.writeByteAndShort((byte) 0xda, (short) length);
+        } else {
+            out.writeByteAndInt((byte) 0xdb, (int) length);
+        }
+    }
+
+    @Override
+    public Packer writeRaw(InputStream in, long length) throws IOException {
+        writeRawHeader(length);
+        byte[] chunk = new byte[(int) Math.min(length, RAW_CHUNK_SIZE)];
+        long remain = length;
+        while (remain > 0) {
+            int n = in.read(chunk, 0, (int) Math.min(chunk.length, remain));
+            if (n < 0) {
+                throw new EOFException();
+            }
+            out.write(chunk, 0, n);
+            remain -= n;
+            if (n > retainedLength && remain > 0) {
+                chunk = new byte[chunk.length];
+            }
+        }
+        reduceCount();
+        return this;
+    }
+
+    @Override
+    public Packer writeRaw(FileChannel in, long length) throws IOException {
+        writeRawHeader(length);
+        if (out instanceof ChannelOutput) {
+            ((ChannelOutput) out).transferFrom(in, length);
+            reduceCount();
+            return this;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(length, RAW_CHUNK_SIZE));
+        long remain = length;
+        while (remain > 0) {
+            chunk.clear();
+            if (remain < chunk.capacity()) {
+                chunk.limit((int) remain);
+            }
+            if (in.read(chunk) < 0) {
+                throw new EOFException();
+            }
+            chunk.flip();
+            remain -= chunk.remaining();
+            out.write(chunk);
+        }
+        reduceCount();
+        return this;
     }
 
     @Override
@@ -221,31 +488,59 @@ public class MessagePackPacker extends AbstractPacker {
         } finally {
             bb.position(pos);
         }
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
     protected void writeString(String s) throws IOException {
-        byte[] b;
+        writeString((CharSequence) s);
+    }
+
+    @Override
+    protected void writeString(CharSequence s) throws IOException {
+        int length = Utf8.length(s);
+        writeRawHeader(length);
+        out.writeUTF8(s, length);
+        reduceCount();
+    }
+
+    @Override
+    protected void writePreEncodedString(PreEncodedString s) throws IOException {
+        byte[] b = s.getEncoded();
+        out.write(b, 0, b.length);
+        reduceCount();
+    }
+
+    @Override
+    protected void writePreEncodedBuffer(ByteBuffer bb, boolean check) throws IOException {
+        if (check) {
+            checkPreEncoded(bb);
+        }
+        int pos = bb.position();
         try {
-            // TODO encoding error?
-            b = s.getBytes("UTF-8");
-        } catch (UnsupportedEncodingException ex) {
-            throw new MessageTypeException(ex);
+            out.write(bb);
+        } finally {
+            bb.position(pos);
         }
-        writeByteArray(b, 0, b.length);
-        stack.reduceCount();
+        reduceCount();
     }
 
     @Override
     public Packer writeNil() throws IOException {
         out.writeByte((byte) 0xc0);
-        stack.reduceCount();
+        reduceCount();
         return this;
     }
 
     @Override
     public Packer writeArrayBegin(int size) throws IOException {
+        writeArrayHeader(size);
+        stack.reduceCount();
+        stack.pushArray(size);
+        return this;
+    }
+
+    private void writeArrayHeader(int size) throws IOException {
         // TODO check size < 0?
         if (size < 16) {
             // FixArray
@@ -255,8 +550,15 @@ public class MessagePackPacker extends AbstractPacker {
         } else {
             out.writeByteAndInt((byte) 0xdd, size);
         }
+    }
+
+    @Override
+    public Packer writeArrayBegin() throws IOException {
+        int position = patchableOutput().getSize();
+        // a 32-bit header is reserved and fixed up by writeArrayEnd
+        out.writeByteAndInt((byte) 0xdd, 0);
         stack.reduceCount();
-        stack.pushArray(size);
+        stack.pushUnknownArray(position);
         return this;
     }
 
@@ -267,6 +569,13 @@ public class MessagePackPacker extends AbstractPacker {
                     "writeArrayEnd() is called but writeArrayBegin() is not called");
         }
 
+        if (stack.topIsUnknown()) {
+            patchHeader(stack.getTopPosition(), -stack.getTopCount(), 0x90, 0xdc, 0xdd);
+            stack.pop();
+            drainIfTopLevel();
+            return this;
+        }
+
         int remain = stack.getTopCount();
         if (remain > 0) {
             if (check) {
@@ -278,6 +587,7 @@ public class MessagePackPacker extends AbstractPacker {
             }
         }
         stack.pop();
+        drainIfTopLevel();
         return this;
     }
 
@@ -297,6 +607,50 @@ public class MessagePackPacker extends AbstractPacker {
         return this;
     }
 
+    @Override
+    public Packer writeMapBegin() throws IOException {
+        int position = patchableOutput().getSize();
+        out.writeByteAndInt((byte) 0xdf, 0);
+        stack.reduceCount();
+        stack.pushUnknownMap(position);
+        return this;
+    }
+
+    private ArrayBufferOutput patchableOutput() {
+        if (!(out instanceof ArrayBufferOutput)) {
+            throw new UnsupportedOperationException(
+                    "Containers of unknown size need a buffer-based packer");
+        }
+        return (ArrayBufferOutput) out;
+    }
+
+    /**
+     * Replaces the reserved 32-bit header at <tt>position</tt> with the
+     * shortest header for <tt>size</tt>, so the bytes match a container
+     * whose size was given up front.
+     */
+    private void patchHeader(int position, int size, int fix, int b16, int b32) {
+        byte[] h = header;
+        int len;
+        if (size < 16) {
+            h[0] = (byte) (fix | size);
+            len = 1;
+        } else if (size < 65536) {
+            h[0] = (byte) b16;
+            h[1] = (byte) (size >> 8);
+            h[2] = (byte) size;
+            len = 3;
+        } else {
+            h[0] = (byte) b32;
+            h[1] = (byte) (size >> 24);
+            h[2] = (byte) (size >> 16);
+            h[3] = (byte) (size >> 8);
+            h[4] = (byte) size;
+            len = 5;
+        }
+        ((ArrayBufferOutput) out).replace(position, 5, h, 0, len);
+    }
+
     @Override
     public Packer writeMapEnd(boolean check) throws IOException {
         if (!stack.topIsMap()) {
@@ -304,6 +658,18 @@ public class MessagePackPacker extends AbstractPacker {
                     "writeMapEnd() is called but writeMapBegin() is not called");
         }
 
+        if (stack.topIsUnknown()) {
+            int count = -stack.getTopCount();
+            if (count % 2 != 0) {
+                throw new MessageTypeException(
+                        "writeMapEnd() is called but the last key has no value");
+            }
+            patchHeader(stack.getTopPosition(), count / 2, 0x80, 0xde, 0xdf);
+            stack.pop();
+            drainIfTopLevel();
+            return this;
+        }
+
         int remain = stack.getTopCount();
         if (remain > 0) {
             if (check) {
@@ -315,6 +681,7 @@ public class MessagePackPacker extends AbstractPacker {
             }
         }
         stack.pop();
+        drainIfTopLevel();
         return this;
     }
 
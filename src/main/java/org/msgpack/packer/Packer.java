@@ -21,7 +21,9 @@ import java.math.BigInteger;
 import java.io.IOException;
 import java.io.Closeable;
 import java.io.Flushable;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import org.msgpack.type.Value;
 
 /**
@@ -66,10 +68,71 @@ public interface Packer extends Closeable, Flushable {
 
     public Packer write(byte[] o, int off, int len) throws IOException;
 
+    /**
+     * Writes <tt>len</tt> elements of <tt>o</tt> from <tt>off</tt> as an
+     * array.
+     */
+    public Packer write(short[] o, int off, int len) throws IOException;
+
+    public Packer write(int[] o, int off, int len) throws IOException;
+
+    public Packer write(long[] o, int off, int len) throws IOException;
+
+    public Packer write(float[] o, int off, int len) throws IOException;
+
+    public Packer write(double[] o, int off, int len) throws IOException;
+
     public Packer write(ByteBuffer o) throws IOException;
 
+    /**
+     * Writes a raw of <tt>length</tt> bytes read from <tt>in</tt> in bounded
+     * chunks. EOFException is thrown if <tt>in</tt> ends before
+     * <tt>length</tt> bytes.
+     */
+    public Packer writeRaw(InputStream in, long length) throws IOException;
+
+    /**
+     * Writes a raw of <tt>length</tt> bytes read from the current position of
+     * <tt>in</tt> in bounded chunks.
+     */
+    public Packer writeRaw(FileChannel in, long length) throws IOException;
+
     public Packer write(String o) throws IOException;
 
+    /**
+     * Writes the characters of <tt>o</tt> as a UTF-8 string without
+     * converting it to a String first.
+     */
+    public Packer write(CharSequence o) throws IOException;
+
+    /**
+     * Writes the string encoded when <tt>o</tt> was created.
+     */
+    public Packer write(PreEncodedString o) throws IOException;
+
+    /**
+     * Appends <tt>b</tt>, which must hold exactly one MessagePack object
+     * (for example a sub-document received or cached in encoded form),
+     * without decoding it. It counts as one element of the enclosing array
+     * or map.
+     */
+    public Packer writePreEncoded(byte[] b) throws IOException;
+
+    /**
+     * Appends <tt>b</tt> as {@link #writePreEncoded(byte[])} does. If
+     * <tt>check</tt> is true, MessageTypeException is thrown unless the bytes
+     * form exactly one object.
+     */
+    public Packer writePreEncoded(byte[] b, boolean check) throws IOException;
+
+    /**
+     * Appends the remaining bytes of <tt>bb</tt> as one encoded object. The
+     * position of <tt>bb</tt> is not changed.
+     */
+    public Packer writePreEncoded(ByteBuffer bb) throws IOException;
+
+    public Packer writePreEncoded(ByteBuffer bb, boolean check) throws IOException;
+
     public Packer write(Value v) throws IOException;
 
     public Packer write(Object o) throws IOException;
@@ -78,12 +141,25 @@ public interface Packer extends Closeable, Flushable {
 
     public Packer writeArrayBegin(int size) throws IOException;
 
+    /**
+     * Begins an array whose size is counted until {@link #writeArrayEnd()}.
+     * Only buffer-based packers support it; they write the header when the
+     * array ends.
+     */
+    public Packer writeArrayBegin() throws IOException;
+
     public Packer writeArrayEnd(boolean check) throws IOException;
 
     public Packer writeArrayEnd() throws IOException;
 
     public Packer writeMapBegin(int size) throws IOException;
 
+    /**
+     * Begins a map whose size is counted until {@link #writeMapEnd()}.
+     * Only buffer-based packers support it.
+     */
+    public Packer writeMapBegin() throws IOException;
+
     public Packer writeMapEnd(boolean check) throws IOException;
 
     public Packer writeMapEnd() throws IOException;
@@ -23,6 +23,8 @@ public final class PackerStack {
     private int top;
     private byte[] types;
     private int[] counts;
+    // header position of a container whose size is written at its end, or -1
+    private int[] positions;
 
     public static final int MAX_STACK_SIZE = 128;
 
@@ -34,6 +36,7 @@ public final class PackerStack {
         this.top = 0;
         this.types = new byte[MAX_STACK_SIZE];
         this.counts = new int[MAX_STACK_SIZE];
+        this.positions = new int[MAX_STACK_SIZE];
         this.types[0] = TYPE_INVALID;
     }
 
@@ -41,12 +44,33 @@ public final class PackerStack {
         top++;
         types[top] = TYPE_ARRAY;
         counts[top] = size;
+        positions[top] = -1;
     }
 
     public void pushMap(int size) {
         top++;
         types[top] = TYPE_MAP;
         counts[top] = size * 2;
+        positions[top] = -1;
+    }
+
+    /**
+     * Pushes an array whose size is not known yet. Its count starts at zero
+     * and goes negative as elements are written, so the number of elements
+     * is <tt>-getTopCount()</tt>.
+     */
+    public void pushUnknownArray(int position) {
+        pushArray(0);
+        positions[top] = position;
+    }
+
+    /**
+     * Pushes a map whose size is not known yet. The number of keys and
+     * values written is <tt>-getTopCount()</tt>.
+     */
+    public void pushUnknownMap(int position) {
+        pushMap(0);
+        positions[top] = position;
     }
 
     public void checkCount() {
@@ -84,6 +108,14 @@ public final class PackerStack {
         return counts[top];
     }
 
+    public boolean topIsUnknown() {
+        return positions[top] >= 0;
+    }
+
+    public int getTopPosition() {
+        return positions[top];
+    }
+
     public boolean topIsArray() {
         return types[top] == TYPE_ARRAY;
     }
@@ -0,0 +1,157 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.packer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.msgpack.MessageTypeException;
+import org.msgpack.io.Utf8;
+
+/**
+ * String constant whose MessagePack encoding, the raw header followed by the
+ * UTF-8 bytes, is computed once. {@link Packer#write(PreEncodedString)} copies
+ * it into the output as is, so map keys and names repeated in every message
+ * are not encoded again.
+ */
+public final class PreEncodedString implements CharSequence {
+    private final String string;
+
+    private final byte[] encoded;
+
+    public PreEncodedString(String string) {
+        if (string == null) {
+            throw new NullPointerException("string is null");
+        }
+        this.string = string;
+        int length = Utf8.length(string);
+        byte[] b = newEncoded(length);
+        Utf8.encode(string, b, b.length - length);
+        this.encoded = b;
+    }
+
+    // takes the UTF-8 bytes of a raw value read from a message
+    PreEncodedString(ByteBuffer utf8) {
+        int length = utf8.remaining();
+        byte[] b = newEncoded(length);
+        int headerSize = b.length - length;
+        utf8.get(b, headerSize, length);
+        this.encoded = b;
+        this.string = decode(b, headerSize, length);
+    }
+
+    /**
+     * Returns an instance for the UTF-8 bytes between the position and the
+     * limit of <tt>utf8</tt>, which are decoded once and not encoded again.
+     * It is used to read PreEncodedString values.
+     * 
+     * @throws MessageTypeException
+     *             if the bytes are not valid UTF-8
+     */
+    public static PreEncodedString fromUtf8(ByteBuffer utf8) {
+        return new PreEncodedString(utf8);
+    }
+
+    // an array holding the raw header for length bytes, followed by room
+    // for the bytes
+    private static byte[] newEncoded(int length) {
+        int headerSize = length < 32 ? 1 : length < 65536 ? 3 : 5;
+        byte[] b = new byte[headerSize + length];
+        if (length < 32) {
+            b[0] = (byte) (0xa0 | length);
+        } else if (length < 65536) {
+            b[0] = (byte) 0xda;
+            b[1] = (byte) (length >> 8);
+            b[2] = (byte) length;
+        } else {
+            b[0] = (byte) 0xdb;
+            b[1] = (byte) (length >> 24);
+            b[2] = (byte) (length >> 16);
+            b[3] = (byte) (length >> 8);
+            b[4] = (byte) length;
+        }
+        return b;
+    }
+
+    private static String decode(byte[] b, int off, int len) {
+        // ASCII fast path
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            byte c = b[off + i];
+            if (c < 0) {
+                return decodeUtf8(b, off, len);
+            }
+            chars[i] = (char) c;
+        }
+        return new String(chars);
+    }
+
+    private static String decodeUtf8(byte[] b, int off, int len) {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            return decoder.decode(ByteBuffer.wrap(b, off, len)).toString();
+        } catch (CharacterCodingException ex) {
+            throw new MessageTypeException(ex);
+        }
+    }
+
+    byte[] getEncoded() {
+        return encoded;
+    }
+
+    @Override
+    public int length() {
+        return string.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return string.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return string.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return string;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof PreEncodedString)) {
+            return false;
+        }
+        return string.equals(((PreEncodedString) o).string);
+    }
+
+    @Override
+    public int hashCode() {
+        return string.hashCode();
+    }
+}
@@ -0,0 +1,52 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.packer;
+
+import org.msgpack.MessagePack;
+import org.msgpack.io.CountingOutput;
+
+/**
+ * Packer that writes nothing and computes the exact length of the
+ * MessagePack encoding of what is written to it, for example to size a
+ * buffer before writing into it with {@link MessagePack#createPacker(java.nio.ByteBuffer)}.
+ * Arrays and maps of unknown size are not supported.
+ */
+public class SizeCalculatingPacker extends MessagePackPacker {
+    private final CountingOutput counter;
+
+    public SizeCalculatingPacker(MessagePack msgpack) {
+        this(msgpack, new CountingOutput());
+    }
+
+    private SizeCalculatingPacker(MessagePack msgpack, CountingOutput counter) {
+        super(msgpack, counter);
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the number of bytes written since creation or the last
+     * {@link #reset()}.
+     */
+    public long getSize() {
+        return counter.getCount();
+    }
+
+    public void reset() {
+        counter.reset();
+    }
+}
@@ -27,8 +27,24 @@ public class AnyTemplate<T> extends AbstractTemplate<T> {
 
     private TemplateRegistry registry;
 
+    private final TemplateLookupCache lookupCache;
+
     public AnyTemplate(TemplateRegistry registry) {
         this.registry = registry;
+        this.lookupCache = new TemplateLookupCache(registry);
+    }
+
+    /**
+     * Returns <tt>tmpl</tt>, or if it is an AnyTemplate, a copy with its own
+     * lookup cache, so that each container template caches the classes of
+     * its own elements.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Template<T> forElements(Template<T> tmpl) {
+        if (tmpl instanceof AnyTemplate) {
+            return new AnyTemplate<T>(((AnyTemplate<T>) tmpl).registry);
+        }
+        return tmpl;
     }
 
     @SuppressWarnings("unchecked")
@@ -39,7 +55,7 @@ public class AnyTemplate<T> extends AbstractTemplate<T> {
             }
             pk.writeNil();
         } else {
-            registry.lookup(target.getClass()).write(pk, target);
+            lookupCache.lookup(target.getClass()).write(pk, target);
         }
     }
 
@@ -28,7 +28,7 @@ public class CollectionTemplate<E> extends AbstractTemplate<Collection<E>> {
     private Template<E> elementTemplate;
 
     public CollectionTemplate(Template<E> elementTemplate) {
-        this.elementTemplate = elementTemplate;
+        this.elementTemplate = AnyTemplate.forElements(elementTemplate);
     }
 
     public void write(Packer pk, Collection<E> target, boolean required)
@@ -35,11 +35,7 @@ public class DoubleArrayTemplate extends AbstractTemplate<double[]> {
             pk.writeNil();
             return;
         }
-        pk.writeArrayBegin(target.length);
-        for (double a : target) {
-            pk.write(a);
-        }
-        pk.writeArrayEnd();
+        pk.write(target, 0, target.length);
     }
 
     public double[] read(Unpacker u, double[] to, boolean required)
@@ -51,9 +47,7 @@ public class DoubleArrayTemplate extends AbstractTemplate<double[]> {
         if (to == null || to.length != n) {
             to = new double[n];
         }
-        for (int i = 0; i < n; i++) {
-            to[i] = u.readDouble();
-        }
+        u.readDoubleArray(to, 0, n);
         u.readArrayEnd();
         return to;
     }
@@ -35,11 +35,7 @@ public class FloatArrayTemplate extends AbstractTemplate<float[]> {
             pk.writeNil();
             return;
         }
-        pk.writeArrayBegin(target.length);
-        for (float a : target) {
-            pk.write(a);
-        }
-        pk.writeArrayEnd();
+        pk.write(target, 0, target.length);
     }
 
     public float[] read(Unpacker u, float[] to, boolean required)
@@ -51,9 +47,7 @@ public class FloatArrayTemplate extends AbstractTemplate<float[]> {
         if (to == null || to.length != n) {
             to = new float[n];
         }
-        for (int i = 0; i < n; i++) {
-            to[i] = u.readFloat();
-        }
+        u.readFloatArray(to, 0, n);
         u.readArrayEnd();
         return to;
     }
@@ -35,11 +35,7 @@ public class IntegerArrayTemplate extends AbstractTemplate<int[]> {
             pk.writeNil();
             return;
         }
-        pk.writeArrayBegin(target.length);
-        for (int a : target) {
-            pk.write(a);
-        }
-        pk.writeArrayEnd();
+        pk.write(target, 0, target.length);
     }
 
     public int[] read(Unpacker u, int[] to, boolean required)
@@ -54,9 +50,7 @@ public class IntegerArrayTemplate extends AbstractTemplate<int[]> {
         } else {
             array = new int[n];
         }
-        for (int i = 0; i < n; i++) {
-            array[i] = u.readInt();
-        }
+        u.readIntArray(array, 0, n);
         u.readArrayEnd();
         return array;
     }
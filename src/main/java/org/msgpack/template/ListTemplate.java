@@ -28,7 +28,7 @@ public class ListTemplate<E> extends AbstractTemplate<List<E>> {
     private Template<E> elementTemplate;
 
     public ListTemplate(Template<E> elementTemplate) {
-        this.elementTemplate = elementTemplate;
+        this.elementTemplate = AnyTemplate.forElements(elementTemplate);
     }
 
     public void write(Packer pk, List<E> target, boolean required)
@@ -35,11 +35,7 @@ public class LongArrayTemplate extends AbstractTemplate<long[]> {
             pk.writeNil();
             return;
         }
-        pk.writeArrayBegin(target.length);
-        for (long a : target) {
-            pk.write(a);
-        }
-        pk.writeArrayEnd();
+        pk.write(target, 0, target.length);
     }
 
     public long[] read(Unpacker u, long[] to, boolean required)
@@ -51,9 +47,7 @@ public class LongArrayTemplate extends AbstractTemplate<long[]> {
         if (to == null || to.length != n) {
             to = new long[n];
         }
-        for (int i = 0; i < n; i++) {
-            to[i] = u.readLong();
-        }
+        u.readLongArray(to, 0, n);
         u.readArrayEnd();
         return to;
     }
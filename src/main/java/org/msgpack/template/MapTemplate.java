@@ -29,8 +29,8 @@ public class MapTemplate<K, V> extends AbstractTemplate<Map<K, V>> {
     private Template<V> valueTemplate;
 
     public MapTemplate(Template<K> keyTemplate, Template<V> valueTemplate) {
-        this.keyTemplate = keyTemplate;
-        this.valueTemplate = valueTemplate;
+        this.keyTemplate = AnyTemplate.forElements(keyTemplate);
+        this.valueTemplate = AnyTemplate.forElements(valueTemplate);
     }
 
     public void write(Packer pk, Map<K, V> target, boolean required)
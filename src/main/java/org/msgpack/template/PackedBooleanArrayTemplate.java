@@ -0,0 +1,86 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.template;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.msgpack.packer.Packer;
+import org.msgpack.type.ValueType;
+import org.msgpack.unpacker.Unpacker;
+import org.msgpack.MessageTypeException;
+
+/**
+ * Writes <tt>boolean[]</tt> as a raw bitmap: one byte holding the number of
+ * unused bits in the last byte, then 8 elements per byte, the first in the
+ * highest bit. Arrays in the regular format are also read.
+ */
+public class PackedBooleanArrayTemplate extends AbstractTemplate<boolean[]> {
+    private PackedBooleanArrayTemplate() {
+    }
+
+    public void write(Packer pk, boolean[] target, boolean required)
+            throws IOException {
+        if (target == null) {
+            if (required) {
+                throw new MessageTypeException("Attempted to write null");
+            }
+            pk.writeNil();
+            return;
+        }
+        int n = target.length;
+        byte[] bits = new byte[1 + (n + 7) / 8];
+        bits[0] = (byte) ((8 - n % 8) % 8);
+        for (int i = 0; i < n; i++) {
+            if (target[i]) {
+                bits[1 + (i >> 3)] |= 0x80 >>> (i & 7);
+            }
+        }
+        pk.write(bits);
+    }
+
+    public boolean[] read(Unpacker u, boolean[] to, boolean required)
+            throws IOException {
+        if (!required && u.trySkipNil()) {
+            return null;
+        }
+        if (u.getNextType() == ValueType.ARRAY) {
+            return BooleanArrayTemplate.getInstance().read(u, to, required);
+        }
+        ByteBuffer bb = u.readByteBuffer();
+        int len = bb.remaining();
+        int pad = len > 0 ? bb.get(bb.position()) : -1;
+        if (pad < 0 || pad > 7 || (len == 1 && pad != 0)) {
+            throw new MessageTypeException("Invalid packed boolean[]");
+        }
+        int n = (len - 1) * 8 - pad;
+        if (to == null || to.length != n) {
+            to = new boolean[n];
+        }
+        int base = bb.position() + 1;
+        for (int i = 0; i < n; i++) {
+            to[i] = (bb.get(base + (i >> 3)) & (0x80 >>> (i & 7))) != 0;
+        }
+        return to;
+    }
+
+    static public PackedBooleanArrayTemplate getInstance() {
+        return instance;
+    }
+
+    static final PackedBooleanArrayTemplate instance = new PackedBooleanArrayTemplate();
+}
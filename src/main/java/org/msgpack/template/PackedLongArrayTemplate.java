@@ -0,0 +1,77 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.template;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.msgpack.packer.Packer;
+import org.msgpack.type.ValueType;
+import org.msgpack.unpacker.Unpacker;
+import org.msgpack.MessageTypeException;
+
+/**
+ * Writes <tt>long[]</tt> as a single raw of big-endian 8-byte values
+ * instead of an array. Arrays in the regular format are also read.
+ */
+public class PackedLongArrayTemplate extends AbstractTemplate<long[]> {
+    private PackedLongArrayTemplate() {
+    }
+
+    public void write(Packer pk, long[] target, boolean required)
+            throws IOException {
+        if (target == null) {
+            if (required) {
+                throw new MessageTypeException("Attempted to write null");
+            }
+            pk.writeNil();
+            return;
+        }
+        if (target.length > Integer.MAX_VALUE / 8) {
+            throw new MessageTypeException("Array is too large to pack: " + target.length);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(target.length * 8);
+        bb.asLongBuffer().put(target);
+        pk.write(bb);
+    }
+
+    public long[] read(Unpacker u, long[] to, boolean required)
+            throws IOException {
+        if (!required && u.trySkipNil()) {
+            return null;
+        }
+        if (u.getNextType() == ValueType.ARRAY) {
+            return LongArrayTemplate.getInstance().read(u, to, required);
+        }
+        ByteBuffer bb = u.readByteBuffer();
+        if (bb.remaining() % 8 != 0) {
+            throw new MessageTypeException("Invalid packed long[] length: " + bb.remaining());
+        }
+        int n = bb.remaining() / 8;
+        if (to == null || to.length != n) {
+            to = new long[n];
+        }
+        bb.asLongBuffer().get(to);
+        return to;
+    }
+
+    static public PackedLongArrayTemplate getInstance() {
+        return instance;
+    }
+
+    static final PackedLongArrayTemplate instance = new PackedLongArrayTemplate();
+}
@@ -29,7 +29,7 @@ public class SetTemplate<E> extends AbstractTemplate<Set<E>> {
     private Template<E> elementTemplate;
 
     public SetTemplate(Template<E> elementTemplate) {
-        this.elementTemplate = elementTemplate;
+        this.elementTemplate = AnyTemplate.forElements(elementTemplate);
     }
 
     public void write(Packer pk, Set<E> target, boolean required)
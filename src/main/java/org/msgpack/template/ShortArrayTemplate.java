@@ -35,11 +35,7 @@ public class ShortArrayTemplate extends AbstractTemplate<short[]> {
             pk.writeNil();
             return;
         }
-        pk.writeArrayBegin(target.length);
-        for (short a : target) {
-            pk.write(a);
-        }
-        pk.writeArrayEnd();
+        pk.write(target, 0, target.length);
     }
 
     public short[] read(Unpacker u, short[] to, boolean required)
@@ -51,9 +47,7 @@ public class ShortArrayTemplate extends AbstractTemplate<short[]> {
         if (to == null || to.length != n) {
             to = new short[n];
         }
-        for (int i = 0; i < n; i++) {
-            to[i] = u.readShort();
-        }
+        u.readShortArray(to, 0, n);
         u.readArrayEnd();
         return to;
     }
@@ -0,0 +1,90 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.template;
+
+/**
+ * Remembers the templates of the few classes that one call site writes, in
+ * front of {@link TemplateRegistry#lookup(java.lang.reflect.Type)}. Once more
+ * classes than it holds are seen, every lookup goes to the registry.
+ * Entries are dropped when registrations change. It is safe for concurrent
+ * use.
+ */
+@SuppressWarnings("rawtypes")
+public final class TemplateLookupCache {
+    private static final int MAX_ENTRIES = 4;
+
+    private static final class Entries {
+        final Class<?>[] types;
+
+        final Template[] templates;
+
+        final int stamp;
+
+        Entries(Class<?>[] types, Template[] templates, int stamp) {
+            this.types = types;
+            this.templates = templates;
+            this.stamp = stamp;
+        }
+    }
+
+    private final TemplateRegistry registry;
+
+    // replaced as a whole, so readers see matching types and templates
+    private volatile Entries entries = new Entries(new Class<?>[0], new Template[0], -1);
+
+    private volatile boolean megamorphic;
+
+    public TemplateLookupCache(TemplateRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Template lookup(Class<?> type) {
+        if (megamorphic) {
+            return registry.lookup(type);
+        }
+        Entries e = entries;
+        int stamp = registry.stamp();
+        if (e.stamp == stamp) {
+            Class<?>[] types = e.types;
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == type) {
+                    return e.templates[i];
+                }
+            }
+        }
+        Template tmpl = registry.lookup(type);
+        add(type, tmpl, stamp);
+        return tmpl;
+    }
+
+    private synchronized void add(Class<?> type, Template tmpl, int stamp) {
+        Entries e = entries;
+        int n = e.stamp == stamp ? e.types.length : 0;
+        if (n == MAX_ENTRIES) {
+            megamorphic = true;
+            return;
+        }
+        Class<?>[] types = new Class<?>[n + 1];
+        Template[] templates = new Template[n + 1];
+        System.arraycopy(e.types, 0, types, 0, n);
+        System.arraycopy(e.templates, 0, templates, 0, n);
+        types[n] = type;
+        templates[n] = tmpl;
+        entries = new Entries(types, templates, stamp);
+    }
+}
@@ -17,6 +17,7 @@
 //
 package org.msgpack.template;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -24,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -35,6 +37,7 @@ import java.nio.ByteBuffer;
 
 import org.msgpack.MessagePackable;
 import org.msgpack.MessageTypeException;
+import org.msgpack.packer.PreEncodedString;
 import org.msgpack.template.BigIntegerTemplate;
 import org.msgpack.template.BooleanTemplate;
 import org.msgpack.template.ByteArrayTemplate;
@@ -49,6 +52,7 @@ import org.msgpack.template.IntegerArrayTemplate;
 import org.msgpack.template.IntegerTemplate;
 import org.msgpack.template.LongArrayTemplate;
 import org.msgpack.template.LongTemplate;
+import org.msgpack.template.PreEncodedStringTemplate;
 import org.msgpack.template.ShortArrayTemplate;
 import org.msgpack.template.ShortTemplate;
 import org.msgpack.template.StringTemplate;
@@ -64,17 +68,37 @@ public class TemplateRegistry {
 
     private TemplateRegistry parent = null;
 
+    // this registry followed by its ancestors, nearest first
+    private final TemplateRegistry[] lineage;
+
     private TemplateBuilderChain chain;
 
+    // read without locking; written under the registry lock
     Map<Type, Template<Type>> cache;
 
     private Map<Type, GenericTemplate> genericCache;
 
+    // templates built for parameterized types, keyed by genericTypeKey()
+    private final Map<Object, Resolution> genericTemplates =
+            new ConcurrentHashMap<Object, Resolution>();
+
+    // classes resolved through an interface or a superclass, or to nothing
+    private final Map<Type, Resolution> resolved =
+            new ConcurrentHashMap<Type, Resolution>();
+
+    // incremented under the lock whenever registrations change
+    private volatile int generation;
+
+    // placeholders of templates being built, visible only to the building
+    // thread, which holds the lock while it resolves recursive references
+    private final Map<Type, Template> building = new HashMap<Type, Template>();
+
     /**
      * create <code>TemplateRegistry</code> object of root.
      */
     private TemplateRegistry() {
         parent = null;
+        lineage = new TemplateRegistry[] { this };
         chain = createTemplateBuilderChain();
         genericCache = new HashMap<Type, GenericTemplate>();
         cache = new HashMap<Type, Template<Type>>();
@@ -92,9 +116,12 @@ public class TemplateRegistry {
         } else {
             parent = new TemplateRegistry();
         }
+        lineage = new TemplateRegistry[parent.lineage.length + 1];
+        lineage[0] = this;
+        System.arraycopy(parent.lineage, 0, lineage, 1, parent.lineage.length);
         chain = createTemplateBuilderChain();
-        cache = new HashMap<Type, Template<Type>>();
-        genericCache = new HashMap<Type, GenericTemplate>();
+        cache = new ConcurrentHashMap<Type, Template<Type>>();
+        genericCache = new ConcurrentHashMap<Type, GenericTemplate>();
         registerTemplatesWhichRefersRegistry();
     }
 
@@ -102,8 +129,9 @@ public class TemplateRegistry {
         return new TemplateBuilderChain(this);
     }
 
-    public void setClassLoader(final ClassLoader cl) {
+    public synchronized void setClassLoader(final ClassLoader cl) {
         chain = new TemplateBuilderChain(this, cl);
+        registrationsChanged();
     }
 
     private void registerTemplates() {
@@ -131,6 +159,7 @@ public class TemplateRegistry {
         register(float[].class, FloatArrayTemplate.getInstance());
         register(double[].class, DoubleArrayTemplate.getInstance());
         register(String.class, StringTemplate.getInstance());
+        register(PreEncodedString.class, PreEncodedStringTemplate.getInstance());
         register(byte[].class, ByteArrayTemplate.getInstance());
         register(ByteBuffer.class, ByteBufferTemplate.getInstance());
         register(Value.class, ValueTemplate.getInstance());
@@ -154,11 +183,11 @@ public class TemplateRegistry {
         registerGeneric(Map.class, new GenericMapTemplate(this, MapTemplate.class));
     }
 
-    public void register(final Class<?> targetClass) {
+    public synchronized void register(final Class<?> targetClass) {
         buildAndRegister(null, targetClass, false, null);
     }
 
-    public void register(final Class<?> targetClass, final FieldList flist) {
+    public synchronized void register(final Class<?> targetClass, final FieldList flist) {
         if (flist == null) {
             throw new NullPointerException("FieldList object is null");
         }
@@ -171,10 +200,27 @@ public class TemplateRegistry {
             throw new NullPointerException("Template object is null");
         }
 
+        cacheTemplate(targetType, tmpl);
+        registrationsChanged();
+    }
+
+    // remembers a template found by lookup
+    private synchronized void cacheTemplate(final Type targetType, final Template tmpl) {
         if (targetType instanceof ParameterizedType) {
             cache.put(((ParameterizedType) targetType).getRawType(), tmpl);
+            templateAdded(((ParameterizedType) targetType).getRawType());
         } else {
             cache.put(targetType, tmpl);
+            templateAdded(targetType);
+        }
+    }
+
+    // a subclass or an implementing class may have resolved to an
+    // ancestor's template, or to nothing, before the template of a class
+    // was added; wildcards and type variables are never resolved through
+    private void templateAdded(final Type targetType) {
+        if (targetType instanceof Class) {
+            registrationsChanged();
         }
     }
 
@@ -185,18 +231,53 @@ public class TemplateRegistry {
         } else {
             genericCache.put(targetType, tmpl);
         }
+        registrationsChanged();
     }
 
     public synchronized boolean unregister(final Type targetType) {
         Template<Type> tmpl = cache.remove(targetType);
+        registrationsChanged();
         return tmpl != null;
     }
 
     public synchronized void unregister() {
         cache.clear();
+        registrationsChanged();
     }
 
-    public synchronized Template lookup(Type targetType) {
+    // templates of parameterized types and inherited templates depend on
+    // other registrations, so they are resolved again when any changes
+    private void registrationsChanged() {
+        generation++;
+        genericTemplates.clear();
+        resolved.clear();
+    }
+
+    /**
+     * Returns a value that changes whenever registrations of this registry
+     * or of an ancestor change.
+     */
+    int stamp() {
+        int stamp = 0;
+        for (TemplateRegistry r : lineage) {
+            stamp += r.generation;
+        }
+        return stamp;
+    }
+
+    private static final class Resolution {
+        // null if the type has no template
+        final Template template;
+
+        final int stamp;
+
+        Resolution(Template template, int stamp) {
+            this.template = template;
+            this.stamp = stamp;
+        }
+    }
+
+    public Template lookup(Type targetType) {
         Template tmpl;
 
         if (targetType instanceof ParameterizedType) {
@@ -209,21 +290,47 @@ public class TemplateRegistry {
             targetType = paramedType.getRawType();
         }
 
+        if (!(targetType instanceof GenericArrayType)) {
+            // registered and already built templates are found without locking
+            tmpl = lookupCache(targetType);
+            if (tmpl != null) {
+                return tmpl;
+            }
+            tmpl = lookupResolved(targetType);
+            if (tmpl != null) {
+                return tmpl;
+            }
+        }
+
+        return lookupAfterMiss(targetType);
+    }
+
+    private synchronized Template lookupAfterMiss(Type targetType) {
+        Template tmpl = building.get(targetType);
+        if (tmpl != null) {
+            return tmpl;
+        }
+
         tmpl = lookupGenericArrayType(targetType);
         if (tmpl != null) {
             return tmpl;
         }
 
+        // another thread may have built it while this one was waiting
         tmpl = lookupCache(targetType);
         if (tmpl != null) {
             return tmpl;
         }
+        tmpl = lookupResolved(targetType);
+        if (tmpl != null) {
+            return tmpl;
+        }
 
         if (targetType instanceof WildcardType ||
                 targetType instanceof TypeVariable) {
             // WildcardType is not a Class<?>
             tmpl = new AnyTemplate<Object>(this);
-            register(targetType, tmpl);
+            cacheTemplate(targetType, tmpl);
             return tmpl;
         }
 
@@ -235,7 +342,7 @@ public class TemplateRegistry {
             // following processing should be merged into lookAfterBuilding
             // or lookupInterfaceTypes method in next version
             tmpl = new MessagePackableTemplate(targetClass);
-            register(targetClass, tmpl);
+            cacheTemplate(targetClass, tmpl);
             return tmpl;
         }
 
@@ -243,7 +350,7 @@ public class TemplateRegistry {
             // writing interfaces will succeed
             // reading into interfaces will fail
             tmpl = new AnyTemplate<Object>(this);
-            register(targetType, tmpl);
+            cacheTemplate(targetType, tmpl);
             return tmpl;
         }
 
@@ -253,41 +360,97 @@ public class TemplateRegistry {
             return tmpl;
         }
 
+        int stamp = stamp();
+
         // lookup template of interface type
         tmpl = lookupInterfaceTypes(targetClass);
-        if (tmpl != null) {
-            return tmpl;
-        }
 
         // lookup template of superclass type
-        tmpl = lookupSuperclasses(targetClass);
-        if (tmpl != null) {
-            return tmpl;
+        if (tmpl == null) {
+            tmpl = lookupSuperclasses(targetClass);
         }
 
         // lookup template of interface type of superclasss
-        tmpl = lookupSuperclassInterfaceTypes(targetClass);
+        if (tmpl == null) {
+            tmpl = lookupSuperclassInterfaceTypes(targetClass);
+        }
+
+        // the walks above are not repeated until registrations change
+        resolved.put(targetClass, new Resolution(tmpl, stamp));
         if (tmpl != null) {
             return tmpl;
         }
+        throw templateNotFound(targetClass);
+    }
+
+    private Template lookupResolved(Type targetType) {
+        Resolution r = resolved.get(targetType);
+        if (r == null || r.stamp != stamp()) {
+            return null;
+        }
+        if (r.template == null) {
+            throw templateNotFound(targetType);
+        }
+        return r.template;
+    }
 
-        throw new MessageTypeException(
+    private static MessageTypeException templateNotFound(Type targetClass) {
+        return new MessageTypeException(
                 "Cannot find template for " + targetClass + " class.  " +
                 "Try to add @Message annotation to the class or call MessagePack.register(Type).");
     }
 
     private Template<Type> lookupGenericType(ParameterizedType paramedType) {
+        Object key = genericTypeKey(paramedType);
+        int stamp = stamp();
+        Resolution r = genericTemplates.get(key);
+        if (r != null && r.stamp == stamp) {
+            return r.template;
+        }
+        // an entry built while registrations change is stale at once
+        Template<Type> tmpl = lookupGenericTypeUncached(paramedType);
+        if (tmpl != null) {
+            genericTemplates.put(key, new Resolution(tmpl, stamp));
+        }
+        return tmpl;
+    }
+
+    /**
+     * Returns a key that is equal for parameterized types of the same
+     * structure: raw types and type arguments are compared recursively, and
+     * wildcards and type variables, which are all written by AnyTemplate,
+     * are not distinguished.
+     */
+    private static Object genericTypeKey(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType paramedType = (ParameterizedType) type;
+            Type[] args = paramedType.getActualTypeArguments();
+            Object[] key = new Object[args.length + 1];
+            key[0] = paramedType.getRawType();
+            for (int i = 0; i < args.length; i++) {
+                key[i + 1] = genericTypeKey(args[i]);
+            }
+            return Arrays.asList(key);
+        } else if (type instanceof GenericArrayType) {
+            return Arrays.asList(GenericArrayType.class,
+                    genericTypeKey(((GenericArrayType) type).getGenericComponentType()));
+        } else if (type instanceof WildcardType || type instanceof TypeVariable) {
+            return WildcardType.class;
+        }
+        return type;
+    }
+
+    private Template<Type> lookupGenericTypeUncached(ParameterizedType paramedType) {
         Template<Type> tmpl = lookupGenericTypeImpl(paramedType);
         if (tmpl != null) {
             return tmpl;
         }
 
-        try {
-            tmpl = parent.lookupGenericTypeImpl(paramedType);
+        for (int i = 1; i < lineage.length; i++) {
+            tmpl = lineage[i].lookupGenericTypeImpl(paramedType);
             if (tmpl != null) {
                 return tmpl;
             }
-        } catch (NullPointerException e) { // ignore
         }
 
         tmpl = lookupGenericInterfaceTypes(paramedType);
@@ -354,7 +517,6 @@ public class TemplateRegistry {
             for (; superClass != Object.class; superClass = superClass.getSuperclass()) {
                 tmpl = lookupGenericTypeImpl0(targetType, superClass);
                 if (tmpl != null) {
-                    register(targetType, tmpl);
                     return tmpl;
                 }
             }
@@ -376,12 +538,11 @@ public class TemplateRegistry {
             return tmpl;
         }
 
-        try {
-            tmpl = parent.lookupGenericArrayTypeImpl(genericArrayType);
+        for (int i = 1; i < lineage.length; i++) {
+            tmpl = lineage[i].lookupGenericArrayTypeImpl(genericArrayType);
             if (tmpl != null) {
                 return tmpl;
             }
-        } catch (NullPointerException e) { // ignore
         }
 
         return null;
@@ -447,16 +608,13 @@ public class TemplateRegistry {
     }
 
     private Template<Type> lookupCache(Type targetType) {
-        Template<Type> tmpl = cache.get(targetType);
-        if (tmpl != null) {
-            return tmpl;
-        }
-
-        try {
-            tmpl = parent.lookupCache(targetType);
-        } catch (NullPointerException e) { // ignore
+        for (TemplateRegistry r : lineage) {
+            Template<Type> tmpl = r.cache.get(targetType);
+            if (tmpl != null) {
+                return tmpl;
+            }
         }
-        return tmpl;
+        return null;
     }
 
     private <T> Template<T> lookupAfterBuilding(Class<T> targetClass) {
@@ -466,7 +624,7 @@ public class TemplateRegistry {
             // TODO #MN for Android, we should modify here
             tmpl = chain.getForceBuilder().loadTemplate(targetClass);
             if (tmpl != null) {
-                register(targetClass, tmpl);
+                cacheTemplate(targetClass, tmpl);
                 return tmpl;
             }
             tmpl = buildAndRegister(builder, targetClass, true, null);
@@ -478,19 +636,9 @@ public class TemplateRegistry {
         Class<?>[] infTypes = targetClass.getInterfaces();
         Template<T> tmpl = null;
         for (Class<?> infType : infTypes) {
-            tmpl = (Template<T>) cache.get(infType);
+            tmpl = (Template<T>) lookupCache(infType);
             if (tmpl != null) {
-                register(targetClass, tmpl);
                 return tmpl;
-            } else {
-                try {
-                    tmpl = (Template<T>) parent.lookupCache(infType);
-                    if (tmpl != null) {
-                        register(targetClass, tmpl);
-                        return tmpl;
-                    }
-                } catch (NullPointerException e) { // ignore
-                }
             }
         }
         return tmpl;
@@ -502,19 +650,9 @@ public class TemplateRegistry {
         if (superClass != null) {
             for (; superClass != Object.class; superClass = superClass
                     .getSuperclass()) {
-                tmpl = (Template<T>) cache.get(superClass);
+                tmpl = (Template<T>) lookupCache(superClass);
                 if (tmpl != null) {
-                    register(targetClass, tmpl);
                     return tmpl;
-                } else {
-                    try {
-                        tmpl = (Template<T>) parent.lookupCache(superClass);
-                        if (tmpl != null) {
-                            register(targetClass, tmpl);
-                            return tmpl;
-                        }
-                    } catch (NullPointerException e) { // ignore
-                    }
                 }
             }
         }
@@ -528,17 +666,11 @@ public class TemplateRegistry {
             for (; superClass != Object.class; superClass = superClass.getSuperclass()) {
                 tmpl = (Template<T>) lookupInterfaceTypes(superClass);
                 if (tmpl != null) {
-                    register(targetClass, tmpl);
                     return tmpl;
-                } else {
-                    try {
-                        tmpl = (Template<T>) parent.lookupCache(superClass);
-                        if (tmpl != null) {
-                            register(targetClass, tmpl);
-                            return tmpl;
-                        }
-                    } catch (NullPointerException e) { // ignore
-                    }
+                }
+                tmpl = (Template<T>) lookupCache(superClass);
+                if (tmpl != null) {
+                    return tmpl;
                 }
             }
         }
@@ -549,34 +681,28 @@ public class TemplateRegistry {
             final Class targetClass, final boolean hasAnnotation,
             final FieldList flist) {
         Template newTmpl = null;
-        Template oldTmpl = null;
+        Template oldRef = building.put(targetClass, new TemplateReference(this, targetClass));
         try {
-            if (cache.containsKey(targetClass)) {
-                oldTmpl = cache.get(targetClass);
-            }
-            newTmpl = new TemplateReference(this, targetClass);
-            cache.put(targetClass, newTmpl);
             if (builder == null) {
                 builder = chain.select(targetClass, hasAnnotation);
             }
             newTmpl = flist != null ?
                     builder.buildTemplate(targetClass, flist) : builder.buildTemplate(targetClass);
+            // the template becomes visible to other threads once it is built
+            cache.put(targetClass, newTmpl);
+            templateAdded(targetClass);
             return newTmpl;
         } catch (Exception e) {
-            if (oldTmpl != null) {
-                cache.put(targetClass, oldTmpl);
-            } else {
-                cache.remove(targetClass);
-            }
-            newTmpl = null;
             if (e instanceof MessageTypeException) {
                 throw (MessageTypeException) e;
             } else {
                 throw new MessageTypeException(e);
             }
         } finally {
-            if (newTmpl != null) {
-                cache.put(targetClass, newTmpl);
+            if (oldRef != null) {
+                building.put(targetClass, oldRef);
+            } else {
+                building.remove(targetClass);
             }
         }
     }
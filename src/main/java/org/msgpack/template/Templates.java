@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.math.BigInteger;
 import java.math.BigDecimal;
+import org.msgpack.packer.PreEncodedString;
 import org.msgpack.type.Value;
 
 @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -52,8 +53,20 @@ public final class Templates {
 
     public static final Template<String> TString = StringTemplate.getInstance();
 
+    public static final Template<PreEncodedString> TPreEncodedString = PreEncodedStringTemplate.getInstance();
+
     public static final Template<byte[]> TByteArray = ByteArrayTemplate.getInstance();
 
+    public static final Template<boolean[]> TPackedBooleanArray = PackedBooleanArrayTemplate.getInstance();
+
+    public static final Template<int[]> TPackedIntegerArray = PackedIntegerArrayTemplate.getInstance();
+
+    public static final Template<long[]> TPackedLongArray = PackedLongArrayTemplate.getInstance();
+
+    public static final Template<float[]> TPackedFloatArray = PackedFloatArrayTemplate.getInstance();
+
+    public static final Template<double[]> TPackedDoubleArray = PackedDoubleArrayTemplate.getInstance();
+
     public static final Template<ByteBuffer> TByteBuffer = ByteBufferTemplate.getInstance();
 
     public static final Template<Date> TDate = DateTemplate.getInstance();
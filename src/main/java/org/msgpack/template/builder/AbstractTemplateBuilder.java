@@ -38,6 +38,11 @@ import org.msgpack.annotation.Optional;
 import org.msgpack.annotation.OrdinalEnum;
 import org.msgpack.template.FieldList;
 import org.msgpack.template.FieldOption;
+import org.msgpack.template.PackedBooleanArrayTemplate;
+import org.msgpack.template.PackedDoubleArrayTemplate;
+import org.msgpack.template.PackedFloatArrayTemplate;
+import org.msgpack.template.PackedIntegerArrayTemplate;
+import org.msgpack.template.PackedLongArrayTemplate;
 import org.msgpack.template.Template;
 import org.msgpack.template.TemplateRegistry;
 import org.msgpack.template.builder.TemplateBuildException;
@@ -228,6 +233,30 @@ public abstract class AbstractTemplateBuilder implements TemplateBuilder {
         }
     }
 
+    /**
+     * Returns the template for a field: the packed form for fields annotated
+     * with {@link org.msgpack.annotation.Packed}, the registered one otherwise.
+     */
+    protected Template<?> toFieldTemplate(FieldEntry entry) {
+        if (!entry.isPacked()) {
+            return registry.lookup(entry.getGenericType());
+        }
+        Class<?> type = entry.getType();
+        if (type == boolean[].class) {
+            return PackedBooleanArrayTemplate.getInstance();
+        } else if (type == int[].class) {
+            return PackedIntegerArrayTemplate.getInstance();
+        } else if (type == long[].class) {
+            return PackedLongArrayTemplate.getInstance();
+        } else if (type == float[].class) {
+            return PackedFloatArrayTemplate.getInstance();
+        } else if (type == double[].class) {
+            return PackedDoubleArrayTemplate.getInstance();
+        }
+        throw new TemplateBuildException("@Packed is not supported for "
+                + type.getName() + ": " + entry.getName());
+    }
+
     private int getFieldIndex(final Field field, int maxIndex) {
         Index a = field.getAnnotation(Index.class);
         if (a == null) {
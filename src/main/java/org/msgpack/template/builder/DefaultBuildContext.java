@@ -30,6 +30,7 @@ import org.msgpack.unpacker.Unpacker;
 import javassist.CannotCompileException;
 import javassist.CtClass;
 import javassist.CtConstructor;
+import javassist.CtField;
 import javassist.CtNewConstructor;
 import javassist.NotFoundException;
 
@@ -63,15 +64,51 @@ public class DefaultBuildContext extends BuildContext<FieldEntry> {
 
     protected void buildConstructor() throws CannotCompileException,
             NotFoundException {
+        // private fields are looked up and made accessible once, here
+        tmplCtClass.addField(CtField.make(
+                "private java.lang.reflect.Field[] fields;", tmplCtClass));
+        resetStringBuilder();
+        buildString("\n{\n");
+        buildString("  super($1, $2);\n");
+        buildString("  this.fields = new java.lang.reflect.Field[%d];\n", entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            if (!entries[i].isAvailable()) {
+                continue;
+            }
+            Field f = ((DefaultFieldEntry) entries[i]).getField();
+            if (Modifier.isPrivate(f.getModifiers())) {
+                buildString("  this.fields[%d] = %s.privateField(%s.class, \"%s\");\n",
+                        i, DefaultBuildContext.class.getName(),
+                        f.getDeclaringClass().getName(), f.getName());
+            }
+        }
+        buildString("}\n");
+
         // Constructor(Class targetClass, Template[] templates)
         CtConstructor newCtCons = CtNewConstructor.make(
                 new CtClass[] {
                         director.getCtClass(Class.class.getName()),
                         director.getCtClass(Template.class.getName() + "[]")
-                }, new CtClass[0], tmplCtClass);
+                }, new CtClass[0], getBuiltString(), tmplCtClass);
         tmplCtClass.addConstructor(newCtCons);
     }
 
+    public static Field privateField(Class targetClass, String fieldName) {
+        try {
+            Field field = targetClass.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            throw new MessageTypeException(e);
+        }
+    }
+
+    // suffix of the Field.getXxx/setXxx methods for a primitive type
+    private static String fieldAccessorName(Class<?> type) {
+        String name = type.getName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
     protected Template buildInstance(Class<?> c) throws NoSuchMethodException,
             InstantiationException, IllegalAccessException,
             InvocationTargetException {
@@ -111,18 +148,18 @@ public class DefaultBuildContext extends BuildContext<FieldEntry> {
                 if (!isPrivate) {
                     buildString("  $1.%s(_$$_t.%s);\n", primitiveWriteName(type), de.getName());
                 } else {
-                    buildString(
-                            "  %s.writePrivateField($1, _$$_t, %s.class, \"%s\", templates[%d]);\n",
-                            DefaultBuildContext.class.getName(), de.getField().getDeclaringClass().getName(), de.getName(), i);
+                    buildString("  $1.%s(this.fields[%d].get%s(_$$_t));\n",
+                            primitiveWriteName(type), i, fieldAccessorName(type));
                 }
             } else { // reference types
+                // javassist miscounts the arguments when a long[] or
+                // double[] field is passed directly to an interface method
                 if (!isPrivate) {
-                    buildString("  if (_$$_t.%s == null) {\n", de.getName());
+                    buildString("  java.lang.Object _$$_v%d = _$$_t.%s;\n", i, de.getName());
                 } else {
-                    buildString(
-                            "  if (%s.readPrivateField(_$$_t, %s.class, \"%s\") == null) {\n",
-                            DefaultBuildContext.class.getName(), de.getField().getDeclaringClass().getName(), de.getName());
+                    buildString("  java.lang.Object _$$_v%d = this.fields[%d].get(_$$_t);\n", i, i);
                 }
+                buildString("  if (_$$_v%d == null) {\n", i);
                 if (de.isNotNullable()) {
                     buildString(
                             "    throw new %s(\"%s cannot be null by @NotNullable\");\n",
@@ -131,13 +168,7 @@ public class DefaultBuildContext extends BuildContext<FieldEntry> {
                     buildString("    $1.writeNil();\n");
                 }
                 buildString("  } else {\n");
-                if (!isPrivate) {
-                    buildString("    templates[%d].write($1, _$$_t.%s);\n", i, de.getName());
-                } else {
-                    buildString(
-                            "    %s.writePrivateField($1, _$$_t, %s.class, \"%s\", templates[%d]);\n",
-                            DefaultBuildContext.class.getName(), de.getField().getDeclaringClass().getName(), de.getName(), i);
-                }
+                buildString("    templates[%d].write($1, _$$_v%d);\n", i, i);
                 buildString("  }\n");
             }
         }
@@ -217,19 +248,19 @@ public class DefaultBuildContext extends BuildContext<FieldEntry> {
                 if (!isPrivate) {
                     buildString("    _$$_t.%s = $1.%s();\n", de.getName(), primitiveReadName(type));
                 } else {
-                    buildString(
-                            "    %s.readPrivateField($1, _$$_t, %s.class, \"%s\", templates[%d]);\n",
-                            DefaultBuildContext.class.getName(), de.getField().getDeclaringClass().getName(), de.getName(), i);
+                    buildString("    this.fields[%d].set%s(_$$_t, (%s) $1.%s());\n",
+                            i, fieldAccessorName(type), type.getName(), primitiveReadName(type));
                 }
             } else {
                 if (!isPrivate) {
+                    buildString("    java.lang.Object _$$_v%d = _$$_t.%s;\n", i, de.getName());
                     buildString(
-                            "    _$$_t.%s = (%s) this.templates[%d].read($1, _$$_t.%s);\n",
-                            de.getName(), de.getJavaTypeName(), i, de.getName());
+                            "    _$$_t.%s = (%s) this.templates[%d].read($1, _$$_v%d);\n",
+                            de.getName(), de.getJavaTypeName(), i, i);
                 } else {
-                    buildString(
-                            "    %s.readPrivateField($1, _$$_t, %s.class, \"%s\", templates[%d]);\n",
-                            DefaultBuildContext.class.getName(), de.getField().getDeclaringClass().getName(), de.getName(), i);
+                    buildString("    java.lang.Object _$$_v%d = this.fields[%d].get(_$$_t);\n", i, i);
+                    buildString("    this.fields[%d].set(_$$_t, this.templates[%d].read($1, _$$_v%d));\n",
+                            i, i, i);
                 }
             }
 
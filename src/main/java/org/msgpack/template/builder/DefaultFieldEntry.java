@@ -21,6 +21,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 
 import org.msgpack.MessageTypeException;
+import org.msgpack.annotation.Packed;
 import org.msgpack.template.FieldOption;
 
 public class DefaultFieldEntry extends FieldEntry {
@@ -62,6 +63,11 @@ public class DefaultFieldEntry extends FieldEntry {
         return field.getGenericType();
     }
 
+    @Override
+    public boolean isPacked() {
+        return field != null && field.isAnnotationPresent(Packed.class);
+    }
+
     @Override
     public Object get(Object target) {
         try {
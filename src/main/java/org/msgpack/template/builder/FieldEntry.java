@@ -53,6 +53,10 @@ public abstract class FieldEntry {
         return option == FieldOption.NOTNULLABLE;
     }
 
+    public boolean isPacked() {
+        return false;
+    }
+
     public abstract String getName();
 
     public abstract Class<?> getType();
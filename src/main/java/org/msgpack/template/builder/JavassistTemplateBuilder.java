@@ -125,7 +125,7 @@ public class JavassistTemplateBuilder extends AbstractTemplateBuilder {
             if (!e.isAvailable()) {
                 tmpls[i] = null;
             } else {
-                Template<?> tmpl = registry.lookup(e.getGenericType());
+                Template<?> tmpl = toFieldTemplate(e);
                 tmpls[i] = tmpl;
             }
         }
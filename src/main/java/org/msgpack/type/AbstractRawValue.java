@@ -40,6 +40,16 @@ abstract class AbstractRawValue extends AbstractValue implements RawValue {
         return this;
     }
 
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return ByteBuffer.wrap(getByteArray()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public RawValue detach() {
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
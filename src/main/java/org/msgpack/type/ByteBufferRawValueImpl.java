@@ -0,0 +1,99 @@
+//
+// MessagePack for Java
+//
+// Copyright (C) 2009 - 2013 FURUHASHI Sadayuki
+//
+//    Licensed under the Apache License, Version 2.0 (the "License");
+//    you may not use this file except in compliance with the License.
+//    You may obtain a copy of the License at
+//
+//        http://www.apache.org/licenses/LICENSE-2.0
+//
+//    Unless required by applicable law or agreed to in writing, software
+//    distributed under the License is distributed on an "AS IS" BASIS,
+//    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//    See the License for the specific language governing permissions and
+//    limitations under the License.
+//
+package org.msgpack.type;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import org.msgpack.packer.Packer;
+import org.msgpack.MessageTypeException;
+
+/**
+ * Raw value that refers to a slice of the buffer it was deserialized from.
+ * It must be {@link #detach() detached} before the buffer is reused.
+ */
+class ByteBufferRawValueImpl extends AbstractRawValue {
+    private final ByteBuffer buffer;
+
+    ByteBufferRawValueImpl(ByteBuffer bb) {
+        this.buffer = bb.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] getByteArray() {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public String getString() {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            return decoder.decode(buffer.duplicate()).toString();
+        } catch (CharacterCodingException ex) {
+            throw new MessageTypeException(ex);
+        }
+    }
+
+    @Override
+    public RawValue detach() {
+        return new ByteArrayRawValueImpl(getByteArray(), true);
+    }
+
+    @Override
+    public void writeTo(Packer pk) throws IOException {
+        pk.write(buffer.duplicate());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Value)) {
+            return false;
+        }
+        Value v = (Value) o;
+        if (!v.isRawValue()) {
+            return false;
+        }
+
+        return buffer.equals(v.asRawValue().getByteBuffer());
+    }
+
+    @Override
+    public int hashCode() {
+        // same as Arrays.hashCode(getByteArray())
+        int h = 1;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            h = 31 * h + buffer.get(i);
+        }
+        return h;
+    }
+}
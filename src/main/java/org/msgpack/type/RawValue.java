@@ -17,8 +17,22 @@
 //
 package org.msgpack.type;
 
+import java.nio.ByteBuffer;
+
 public interface RawValue extends Value {
     public byte[] getByteArray();
 
+    /**
+     * Returns a read-only view of the bytes. It may share memory with the
+     * buffer this value was deserialized from.
+     */
+    public ByteBuffer getByteBuffer();
+
     public String getString();
+
+    /**
+     * Returns a value that doesn't refer to the buffer it was deserialized
+     * from. Values that own their bytes return themselves.
+     */
+    public RawValue detach();
 }
@@ -92,6 +92,18 @@ public final class ValueFactory {
         }
     }
 
+    /**
+     * Creates a raw value of the remaining bytes of <tt>bb</tt>. If
+     * <tt>gift</tt> is true, the value refers to <tt>bb</tt>'s memory instead
+     * of copying it; see {@link RawValue#detach()}.
+     */
+    public static RawValue createRawValue(ByteBuffer bb, boolean gift) {
+        if (!gift) {
+            return createRawValue(bb);
+        }
+        return new ByteBufferRawValueImpl(bb);
+    }
+
     public static ArrayValue createArrayValue() {
         return ArrayValueImpl.getEmptyInstance();
     }
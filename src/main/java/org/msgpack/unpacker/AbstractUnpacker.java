@@ -17,8 +17,12 @@
 //
 package org.msgpack.unpacker;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import org.msgpack.type.Value;
 import org.msgpack.MessagePack;
 import org.msgpack.template.Template;
@@ -37,11 +41,67 @@ public abstract class AbstractUnpacker implements Unpacker {
         this.msgpack = msgpack;
     }
 
+    @Override
+    public void readShortArray(short[] dst, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readShort();
+        }
+    }
+
+    @Override
+    public void readIntArray(int[] dst, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readInt();
+        }
+    }
+
+    @Override
+    public void readLongArray(long[] dst, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readLong();
+        }
+    }
+
+    @Override
+    public void readFloatArray(float[] dst, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readFloat();
+        }
+    }
+
+    @Override
+    public void readDoubleArray(double[] dst, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            dst[i] = readDouble();
+        }
+    }
+
     @Override
     public ByteBuffer readByteBuffer() throws IOException {
         return ByteBuffer.wrap(readByteArray());
     }
 
+    @Override
+    public long readRawTo(OutputStream out) throws IOException {
+        byte[] raw = readByteArray();
+        out.write(raw);
+        return raw.length;
+    }
+
+    @Override
+    public long readRawTo(WritableByteChannel out) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(readByteArray());
+        while (bb.hasRemaining()) {
+            out.write(bb);
+        }
+        return bb.capacity();
+    }
+
+    @Override
+    public InputStream readRawAsInputStream() throws IOException {
+        return new ByteArrayInputStream(readByteArray());
+    }
+
     @Override
     public void readArrayEnd() throws IOException {
         readArrayEnd(false);
@@ -134,4 +194,8 @@ public abstract class AbstractUnpacker implements Unpacker {
             mapSizeLimit = size;
         }
     }
+
+    public void setStringCacheSize(int size) {
+        // strings are not decoded from bytes by default
+    }
 }
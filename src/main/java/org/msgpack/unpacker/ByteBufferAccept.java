@@ -20,23 +20,27 @@ package org.msgpack.unpacker;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
-final class ByteArrayAccept extends Accept {
-    byte[] value;
+final class ByteBufferAccept extends Accept {
+    ByteBuffer value;
 
     @Override
     void acceptRaw(byte[] raw) {
-        this.value = raw;
+        this.value = ByteBuffer.wrap(raw);
     }
 
     @Override
     void acceptEmptyRaw() {
-        this.value = new byte[0];
+        this.value = ByteBuffer.allocate(0);
     }
 
     @Override
     public void refer(ByteBuffer bb, boolean gift) throws IOException {
-        // TODO gift
-        this.value = new byte[bb.remaining()];
-        bb.get(value);
+        if (gift) {
+            this.value = bb.slice().asReadOnlyBuffer();
+        } else {
+            byte[] raw = new byte[bb.remaining()];
+            bb.get(raw);
+            this.value = ByteBuffer.wrap(raw);
+        }
     }
 }
@@ -17,21 +17,35 @@
 //
 package org.msgpack.unpacker;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.msgpack.MessagePack;
+import org.msgpack.io.Input;
+import org.msgpack.io.ArrayBufferInput;
 import org.msgpack.io.LinkedBufferInput;
+import org.msgpack.packer.Unconverter;
+import org.msgpack.type.Value;
 
 public class MessagePackBufferUnpacker extends MessagePackUnpacker implements BufferUnpacker {
     private static final int DEFAULT_BUFFER_SIZE = 512; // TODO default buffer
                                                         // size
 
+    private final LinkedBufferInput linkedInput;
+
+    private ArrayBufferInput arrayInput;
+
+    private int readByteCountBase;
+
+    private Unconverter partialValue;
+
     public MessagePackBufferUnpacker(MessagePack msgpack) {
         this(msgpack, DEFAULT_BUFFER_SIZE);
     }
 
     public MessagePackBufferUnpacker(MessagePack msgpack, int bufferSize) {
-        super(msgpack, new LinkedBufferInput(bufferSize));
+        super(msgpack, new LinkedBufferInput(bufferSize, msgpack.getChunkPool()));
+        this.linkedInput = (LinkedBufferInput) in;
     }
 
     @Override
@@ -41,67 +55,164 @@ public class MessagePackBufferUnpacker extends MessagePackUnpacker implements Bu
 
     @Override
     public MessagePackBufferUnpacker wrap(byte[] b, int off, int len) {
-        ((LinkedBufferInput) in).clear();
-        ((LinkedBufferInput) in).feed(b, off, len, true);
+        linkedInput.clear();
+        getArrayInput().wrap(b, off, len);
+        switchInput(arrayInput);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker wrap(ByteBuffer buf) {
-        ((LinkedBufferInput) in).clear();
-        ((LinkedBufferInput) in).feed(buf, true);
+        linkedInput.clear();
+        if (buf.hasArray()) {
+            getArrayInput().wrap(buf);
+            switchInput(arrayInput);
+            return this;
+        }
+        if (arrayInput != null) {
+            arrayInput.clear();
+        }
+        linkedInput.feed(buf, true);
+        switchInput(linkedInput);
         return this;
     }
 
+    private ArrayBufferInput getArrayInput() {
+        if (arrayInput == null) {
+            arrayInput = new ArrayBufferInput();
+        }
+        return arrayInput;
+    }
+
+    private void switchInput(Input next) {
+        if (in != next) {
+            readByteCountBase += in.getReadByteCount();
+            in.resetReadByteCount();
+            in = next;
+        }
+    }
+
+    private LinkedBufferInput getLinkedInput() {
+        if (in != linkedInput) {
+            arrayInput.moveTo(linkedInput);
+            switchInput(linkedInput);
+        }
+        return linkedInput;
+    }
+
     @Override
     public MessagePackBufferUnpacker feed(byte[] b) {
-        ((LinkedBufferInput) in).feed(b);
+        getLinkedInput().feed(b);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker feed(byte[] b, boolean reference) {
-        ((LinkedBufferInput) in).feed(b, reference);
+        getLinkedInput().feed(b, reference);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker feed(byte[] b, int off, int len) {
-        ((LinkedBufferInput) in).feed(b, off, len);
+        getLinkedInput().feed(b, off, len);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker feed(byte[] b, int off, int len, boolean reference) {
-        ((LinkedBufferInput) in).feed(b, off, len, reference);
+        getLinkedInput().feed(b, off, len, reference);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker feed(ByteBuffer b) {
-        ((LinkedBufferInput) in).feed(b);
+        getLinkedInput().feed(b);
         return this;
     }
 
     @Override
     public MessagePackBufferUnpacker feed(ByteBuffer buf, boolean reference) {
-        ((LinkedBufferInput) in).feed(buf, reference);
+        getLinkedInput().feed(buf, reference);
         return this;
     }
 
+    /**
+     * Reads the next value from the buffered bytes as far as they go. If they
+     * end in the middle of the value, returns NEED_MORE_INPUT instead of
+     * throwing, and the next call continues after more bytes are fed. Other
+     * read methods must not be called until the value is taken by
+     * {@link #takeValue()}.
+     */
+    public UnpackStatus tryReadValue() throws IOException {
+        if (partialValue == null) {
+            partialValue = new Unconverter(msgpack);
+        }
+        if (tryReadValue(partialValue)) {
+            return UnpackStatus.VALUE_READY;
+        }
+        return UnpackStatus.NEED_MORE_INPUT;
+    }
+
+    /**
+     * Returns the value completed by {@link #tryReadValue()}.
+     */
+    public Value takeValue() {
+        Value v = partialValue == null ? null : partialValue.getResult();
+        if (v == null) {
+            throw new IllegalStateException("Value is not ready");
+        }
+        partialValue.resetResult();
+        return v;
+    }
+
+    boolean tryReadValue(Unconverter uc) throws IOException {
+        if (uc.getResult() != null) {
+            return true;
+        }
+        return tryReadValue(uc, getBufferSize());
+    }
+
     @Override
     public int getBufferSize() {
-        return ((LinkedBufferInput) in).getSize();
+        if (in == arrayInput) {
+            return arrayInput.getSize();
+        }
+        return linkedInput.getSize();
     }
 
     @Override
     public void copyReferencedBuffer() {
-        ((LinkedBufferInput) in).copyReferencedBuffer();
+        if (in == arrayInput) {
+            arrayInput.copyReferencedBuffer();
+        } else {
+            linkedInput.copyReferencedBuffer();
+        }
     }
 
     @Override
     public void clear() {
-        ((LinkedBufferInput) in).clear();
+        if (arrayInput != null) {
+            arrayInput.clear();
+        }
+        linkedInput.clear();
+        switchInput(linkedInput);
         reset();
     }
+
+    @Override
+    public void reset() {
+        super.reset();
+        partialValue = null;
+    }
+
+    @Override
+    public int getReadByteCount() {
+        return readByteCountBase + in.getReadByteCount();
+    }
+
+    @Override
+    public void resetReadByteCount() {
+        readByteCountBase = 0;
+        in.resetReadByteCount();
+    }
 }
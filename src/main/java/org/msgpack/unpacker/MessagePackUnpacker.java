@@ -20,9 +20,15 @@ package org.msgpack.unpacker;
 import java.io.IOException;
 import java.io.EOFException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import org.msgpack.io.Input;
+import org.msgpack.io.MappedFileInput;
 import org.msgpack.io.StreamInput;
+import org.msgpack.io.BufferedStreamInput;
 import org.msgpack.io.BufferReferer;
 import org.msgpack.MessagePack;
 import org.msgpack.MessageTypeException;
@@ -32,7 +38,77 @@ import org.msgpack.type.ValueType;
 public class MessagePackUnpacker extends AbstractUnpacker {
     private static final byte REQUIRE_TO_READ_HEAD = (byte) 0xc6;
 
-    protected final Input in;
+    // formats of headers, looked up by the first byte in FORMATS
+    private static final byte INVALID = 0;
+    private static final byte FIXINT = 1;
+    private static final byte FIXRAW = 2;
+    private static final byte FIXARRAY = 3;
+    private static final byte FIXMAP = 4;
+    private static final byte NIL = 5;
+    private static final byte FALSE = 6;
+    private static final byte TRUE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte UINT8 = 10;
+    private static final byte UINT16 = 11;
+    private static final byte UINT32 = 12;
+    private static final byte UINT64 = 13;
+    private static final byte INT8 = 14;
+    private static final byte INT16 = 15;
+    private static final byte INT32 = 16;
+    private static final byte INT64 = 17;
+    private static final byte RAW16 = 18;
+    private static final byte RAW32 = 19;
+    private static final byte ARRAY16 = 20;
+    private static final byte ARRAY32 = 21;
+    private static final byte MAP16 = 22;
+    private static final byte MAP32 = 23;
+
+    private static final byte[] FORMATS = new byte[256];
+
+    // bytes following the first byte of each format, except raw bodies
+    private static final int[] HEADER_SIZES = new int[] {
+        0, 0, 0, 0, 0, 0, 0, 0, 4, 8,
+        1, 2, 4, 8, 1, 2, 4, 8, 2, 4, 2, 4, 2, 4 };
+
+    static {
+        for (int b = 0x00; b <= 0x7f; b++) {
+            FORMATS[b] = FIXINT;
+        }
+        for (int b = 0x80; b <= 0x8f; b++) {
+            FORMATS[b] = FIXMAP;
+        }
+        for (int b = 0x90; b <= 0x9f; b++) {
+            FORMATS[b] = FIXARRAY;
+        }
+        for (int b = 0xa0; b <= 0xbf; b++) {
+            FORMATS[b] = FIXRAW;
+        }
+        for (int b = 0xe0; b <= 0xff; b++) {
+            FORMATS[b] = FIXINT;
+        }
+        FORMATS[0xc0] = NIL;
+        FORMATS[0xc2] = FALSE;
+        FORMATS[0xc3] = TRUE;
+        FORMATS[0xca] = FLOAT;
+        FORMATS[0xcb] = DOUBLE;
+        FORMATS[0xcc] = UINT8;
+        FORMATS[0xcd] = UINT16;
+        FORMATS[0xce] = UINT32;
+        FORMATS[0xcf] = UINT64;
+        FORMATS[0xd0] = INT8;
+        FORMATS[0xd1] = INT16;
+        FORMATS[0xd2] = INT32;
+        FORMATS[0xd3] = INT64;
+        FORMATS[0xda] = RAW16;
+        FORMATS[0xdb] = RAW32;
+        FORMATS[0xdc] = ARRAY16;
+        FORMATS[0xdd] = ARRAY32;
+        FORMATS[0xde] = MAP16;
+        FORMATS[0xdf] = MAP32;
+    }
+
+    protected Input in;
     private final UnpackerStack stack = new UnpackerStack();
 
     private byte headByte = REQUIRE_TO_READ_HEAD;
@@ -40,29 +116,55 @@ public class MessagePackUnpacker extends AbstractUnpacker {
     private byte[] raw;
     private int rawFilled;
 
-    private final IntAccept intAccept = new IntAccept();
-    private final LongAccept longAccept = new LongAccept();
+    private long skipCount;
+    private long skipBytes;
+
+    private static final int RAW_CHUNK_SIZE = 8192;
+
+    private RawInputStream rawStream;
+
+    // depth of the stack where the value read by tryReadValue started
+    private int valueDepth = -1;
+
+    // true while tryReadValue runs; partial raw bodies don't throw
+    private boolean incremental;
+
     private final BigIntegerAccept bigIntegerAccept = new BigIntegerAccept();
-    private final DoubleAccept doubleAccept = new DoubleAccept();
-    private final ByteArrayAccept byteArrayAccept = new ByteArrayAccept();
+    private final ByteBufferAccept byteBufferAccept = new ByteBufferAccept();
     private final StringAccept stringAccept = new StringAccept();
-    private final ArrayAccept arrayAccept = new ArrayAccept();
-    private final MapAccept mapAccept = new MapAccept();
     private final ValueAccept valueAccept = new ValueAccept();
-    private final SkipAccept skipAccept = new SkipAccept();
 
     public MessagePackUnpacker(MessagePack msgpack, InputStream stream) {
         this(msgpack, new StreamInput(stream));
     }
 
+    public MessagePackUnpacker(MessagePack msgpack, InputStream stream, int bufferSize) {
+        this(msgpack, newStreamInput(stream, bufferSize));
+    }
+
+    public MessagePackUnpacker(MessagePack msgpack, FileChannel channel)
+            throws IOException {
+        this(msgpack, new MappedFileInput(channel));
+    }
+
     protected MessagePackUnpacker(MessagePack msgpack, Input in) {
         super(msgpack);
         this.in = in;
     }
 
+    private static Input newStreamInput(InputStream stream, int bufferSize) {
+        if (bufferSize <= 0) {
+            return new StreamInput(stream);
+        }
+        return new BufferedStreamInput(stream, bufferSize);
+    }
+
     private byte getHeadByte() throws IOException {
         byte b = headByte;
         if (b == REQUIRE_TO_READ_HEAD) {
+            if (rawStream != null) {
+                rawStream.close();
+            }
             b = headByte = in.readByte();
         }
         return b;
@@ -77,7 +179,9 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
     final boolean readOneWithoutStack(Accept a) throws IOException {
         if (raw != null) {
-            readRawBodyCont();
+            if (!readRawBodyCont()) {
+                return false;
+            }
             a.acceptRaw(raw);
             raw = null;
             headByte = REQUIRE_TO_READ_HEAD;
@@ -86,197 +190,104 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
         final int b = (int) getHeadByte();
 
-        if ((b & 0x80) == 0) { // Positive Fixnum
-            // System.out.println("positive fixnum "+b);
-            a.acceptInteger(b);
-            headByte = REQUIRE_TO_READ_HEAD;
-            return true;
-        }
-
-        if ((b & 0xe0) == 0xe0) { // Negative Fixnum
-            // System.out.println("negative fixnum "+b);
+        switch (FORMATS[b & 0xff]) {
+        case FIXINT:
             a.acceptInteger(b);
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        }
-
-        if ((b & 0xe0) == 0xa0) { // FixRaw
-            int count = b & 0x1f;
-            if (count == 0) {
-                a.acceptEmptyRaw();
-                headByte = REQUIRE_TO_READ_HEAD;
-                return true;
-            }
-            if (!tryReferRawBody(a, count)) {
-                readRawBody(count);
-                a.acceptRaw(raw);
-                raw = null;
-            }
-            headByte = REQUIRE_TO_READ_HEAD;
-            return true;
-        }
-
-        if ((b & 0xf0) == 0x90) { // FixArray
+        case FIXRAW:
+            return readRawWithoutStack(a, b & 0x1f);
+        case FIXARRAY:
+        {
             int count = b & 0x0f;
-            // System.out.println("fixarray count:"+count);
             a.acceptArray(count);
             stack.reduceCount();
             stack.pushArray(count);
             headByte = REQUIRE_TO_READ_HEAD;
             return false;
         }
-
-        if ((b & 0xf0) == 0x80) { // FixMap
+        case FIXMAP:
+        {
             int count = b & 0x0f;
-            // System.out.println("fixmap count:"+count/2);
             a.acceptMap(count);
             stack.reduceCount();
             stack.pushMap(count);
             headByte = REQUIRE_TO_READ_HEAD;
             return false;
         }
-
-        return readOneWithoutStackLarge(a, b);
-    }
-
-    private boolean readOneWithoutStackLarge(Accept a, final int b)
-            throws IOException {
-        switch (b & 0xff) {
-        case 0xc0: // nil
+        case NIL:
             a.acceptNil();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xc2: // false
+        case FALSE:
             a.acceptBoolean(false);
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xc3: // true
+        case TRUE:
             a.acceptBoolean(true);
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xca: // float
+        case FLOAT:
             a.acceptFloat(in.getFloat());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xcb: // double
+        case DOUBLE:
             a.acceptDouble(in.getDouble());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xcc: // unsigned int 8
+        case UINT8:
             a.acceptUnsignedInteger(in.getByte());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xcd: // unsigned int 16
+        case UINT16:
             a.acceptUnsignedInteger(in.getShort());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xce: // unsigned int 32
+        case UINT32:
             a.acceptUnsignedInteger(in.getInt());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xcf: // unsigned int 64
+        case UINT64:
             a.acceptUnsignedInteger(in.getLong());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xd0: // signed int 8
+        case INT8:
             a.acceptInteger(in.getByte());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xd1: // signed int 16
+        case INT16:
             a.acceptInteger(in.getShort());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xd2: // signed int 32
+        case INT32:
             a.acceptInteger(in.getInt());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xd3: // signed int 64
+        case INT64:
             a.acceptInteger(in.getLong());
             in.advance();
             headByte = REQUIRE_TO_READ_HEAD;
             return true;
-        case 0xda: // raw 16
+        case RAW16:
+        case RAW32:
         {
-            int count = in.getShort() & 0xffff;
-            if (count == 0) {
-                a.acceptEmptyRaw();
-                in.advance();
-                headByte = REQUIRE_TO_READ_HEAD;
-                return true;
-            }
-            if (count >= rawSizeLimit) {
-                String reason = String.format(
-                        "Size of raw (%d) over limit at %d",
-                        new Object[] { count, rawSizeLimit });
-                throw new SizeLimitException(reason);
-            }
+            int count = readRawBodySize(b);
             in.advance();
-            if (!tryReferRawBody(a, count)) {
-                readRawBody(count);
-                a.acceptRaw(raw);
-                raw = null;
-            }
-            headByte = REQUIRE_TO_READ_HEAD;
-            return true;
+            return readRawWithoutStack(a, count);
         }
-        case 0xdb: // raw 32
+        case ARRAY16:
+        case ARRAY32:
         {
-            int count = in.getInt();
-            if (count == 0) {
-                a.acceptEmptyRaw();
-                in.advance();
-                headByte = REQUIRE_TO_READ_HEAD;
-                return true;
-            }
-            if (count < 0 || count >= rawSizeLimit) {
-                String reason = String.format(
-                        "Size of raw (%d) over limit at %d",
-                        new Object[] { count, rawSizeLimit });
-                throw new SizeLimitException(reason);
-            }
-            in.advance();
-            if (!tryReferRawBody(a, count)) {
-                readRawBody(count);
-                a.acceptRaw(raw);
-                raw = null;
-            }
-            headByte = REQUIRE_TO_READ_HEAD;
-            return true;
-        }
-        case 0xdc: // array 16
-        {
-            int count = in.getShort() & 0xffff;
-            if (count >= arraySizeLimit) {
-                String reason = String.format(
-                        "Size of array (%d) over limit at %d",
-                        new Object[] { count, arraySizeLimit });
-                throw new SizeLimitException(reason);
-            }
-            a.acceptArray(count);
-            stack.reduceCount();
-            stack.pushArray(count);
-            in.advance();
-            headByte = REQUIRE_TO_READ_HEAD;
-            return false;
-        }
-        case 0xdd: // array 32
-        {
-            int count = in.getInt();
-            if (count < 0 || count >= arraySizeLimit) {
-                String reason = String.format(
-                        "Size of array (%d) over limit at %d",
-                        new Object[] { count, arraySizeLimit });
-                throw new SizeLimitException(reason);
-            }
+            int count = readArraySize(b);
             a.acceptArray(count);
             stack.reduceCount();
             stack.pushArray(count);
@@ -284,15 +295,10 @@ public class MessagePackUnpacker extends AbstractUnpacker {
             headByte = REQUIRE_TO_READ_HEAD;
             return false;
         }
-        case 0xde: // map 16
+        case MAP16:
+        case MAP32:
         {
-            int count = in.getShort() & 0xffff;
-            if (count >= mapSizeLimit) {
-                String reason = String.format(
-                        "Size of map (%d) over limit at %d",
-                        new Object[] { count, mapSizeLimit });
-                throw new SizeLimitException(reason);
-            }
+            int count = readMapSize(b);
             a.acceptMap(count);
             stack.reduceCount();
             stack.pushMap(count);
@@ -300,46 +306,271 @@ public class MessagePackUnpacker extends AbstractUnpacker {
             headByte = REQUIRE_TO_READ_HEAD;
             return false;
         }
-        case 0xdf: // map 32
-        {
-            int count = in.getInt();
-            if (count < 0 || count >= mapSizeLimit) {
-                String reason = String.format(
-                        "Size of map (%d) over limit at %d",
-                        new Object[] { count, mapSizeLimit });
-                throw new SizeLimitException(reason);
+        default:
+            throw invalidByte(b);
+        }
+    }
+
+    private boolean readRawWithoutStack(Accept a, int count) throws IOException {
+        if (count == 0) {
+            a.acceptEmptyRaw();
+        } else if (!tryReferRawBody(a, count)) {
+            if (!readRawBody(count)) {
+                return false;
             }
-            a.acceptMap(count);
-            stack.reduceCount();
-            stack.pushMap(count);
-            in.advance();
-            headByte = REQUIRE_TO_READ_HEAD;
-            return false;
+            a.acceptRaw(raw);
+            raw = null;
+        }
+        headByte = REQUIRE_TO_READ_HEAD;
+        return true;
+    }
+
+    /**
+     * Reads the size of raw 16 or raw 32 without advancing.
+     */
+    private int readRawBodySize(int b) throws IOException {
+        int count;
+        if ((b & 0xff) == 0xda) {
+            count = in.getShort() & 0xffff;
+        } else {
+            count = in.getInt();
+        }
+        if (count != 0 && (count < 0 || count >= rawSizeLimit)) {
+            String reason = String.format(
+                    "Size of raw (%d) over limit at %d",
+                    new Object[] { count, rawSizeLimit });
+            throw new SizeLimitException(reason);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the size of array 16 or array 32 without advancing.
+     */
+    private int readArraySize(int b) throws IOException {
+        int count;
+        if ((b & 0xff) == 0xdc) {
+            count = in.getShort() & 0xffff;
+        } else {
+            count = in.getInt();
+        }
+        if (count < 0 || count >= arraySizeLimit) {
+            String reason = String.format(
+                    "Size of array (%d) over limit at %d",
+                    new Object[] { count, arraySizeLimit });
+            throw new SizeLimitException(reason);
         }
+        return count;
+    }
+
+    /**
+     * Reads the size of map 16 or map 32 without advancing.
+     */
+    private int readMapSize(int b) throws IOException {
+        int count;
+        if ((b & 0xff) == 0xde) {
+            count = in.getShort() & 0xffff;
+        } else {
+            count = in.getInt();
+        }
+        if (count < 0 || count >= mapSizeLimit) {
+            String reason = String.format(
+                    "Size of map (%d) over limit at %d",
+                    new Object[] { count, mapSizeLimit });
+            throw new SizeLimitException(reason);
+        }
+        return count;
+    }
+
+    private IOException invalidByte(int b) {
+        headByte = REQUIRE_TO_READ_HEAD;
+        return new IOException("Invalid byte: " + b); // TODO error FormatException
+    }
+
+    /**
+     * Returns the exception an Accept rejecting the value of header
+     * <tt>b</tt> would throw. The header is kept so that the value can be
+     * read again as another type.
+     */
+    private MessageTypeException unexpected(int b) throws IOException {
+        switch (FORMATS[b & 0xff]) {
+        case FIXINT: case UINT8: case UINT16: case UINT32: case UINT64:
+        case INT8: case INT16: case INT32: case INT64:
+            return new MessageTypeException("Unexpected integer value");
+        case FIXRAW: case RAW16: case RAW32:
+            return new MessageTypeException("Unexpected raw value");
+        case FIXARRAY: case ARRAY16: case ARRAY32:
+            return new MessageTypeException("Unexpected array value");
+        case FIXMAP: case MAP16: case MAP32:
+            return new MessageTypeException("Unexpected map value");
+        case NIL:
+            return new MessageTypeException("Unexpected nil value");
+        case FALSE: case TRUE:
+            return new MessageTypeException("Unexpected boolean value");
+        case FLOAT: case DOUBLE:
+            return new MessageTypeException("Unexpected float value");
         default:
-            // System.out.println("unknown b "+(b&0xff));
-            // headByte = CS_INVALID
-            headByte = REQUIRE_TO_READ_HEAD;
-            throw new IOException("Invalid byte: " + b); // TODO error FormatException
+            throw invalidByte(b);
+        }
+    }
+
+    /**
+     * Reads the header of a value that isn't a raw.
+     */
+    private int readHead() throws IOException {
+        stack.checkCount();
+        if (raw != null) {
+            throw new MessageTypeException("Unexpected raw value");
+        }
+        return (int) getHeadByte();
+    }
+
+    /**
+     * Reads an integer in [min, max] straight from its header. Out of range
+     * values are rejected before the header is consumed.
+     */
+    private long readInteger(long min, long max) throws IOException {
+        return decodeInteger(readHead(), min, max);
+    }
+
+    private long decodeInteger(final int b, long min, long max) throws IOException {
+        long v;
+        switch (FORMATS[b & 0xff]) {
+        case FIXINT:
+            v = b;
+            break;
+        case UINT8:
+            v = in.getByte() & 0xff;
+            break;
+        case UINT16:
+            v = in.getShort() & 0xffff;
+            break;
+        case UINT32:
+            v = in.getInt() & 0xffffffffL;
+            break;
+        case UINT64:
+            v = in.getLong();
+            if (v < 0) {
+                throw new MessageTypeException(); // TODO message
+            }
+            break;
+        case INT8:
+            v = in.getByte();
+            break;
+        case INT16:
+            v = in.getShort();
+            break;
+        case INT32:
+            v = in.getInt();
+            break;
+        case INT64:
+            v = in.getLong();
+            break;
+        default:
+            throw unexpected(b);
+        }
+        if (v < min || v > max) {
+            throw new MessageTypeException(); // TODO message
         }
+        in.advance();
+        headByte = REQUIRE_TO_READ_HEAD;
+        stack.reduceCount();
+        return v;
+    }
+
+    private double readFloating() throws IOException {
+        return decodeFloating(readHead());
+    }
+
+    private double decodeFloating(final int b) throws IOException {
+        double v;
+        switch (FORMATS[b & 0xff]) {
+        case FLOAT:
+            v = in.getFloat();
+            break;
+        case DOUBLE:
+            v = in.getDouble();
+            break;
+        default:
+            throw unexpected(b);
+        }
+        in.advance();
+        headByte = REQUIRE_TO_READ_HEAD;
+        stack.reduceCount();
+        return v;
+    }
+
+    /**
+     * Reads the header of a raw and returns the size of its body, or -1 if
+     * the body is pending in <tt>raw</tt>.
+     */
+    private int readRawSize() throws IOException {
+        stack.checkCount();
+        if (raw != null) {
+            return -1;
+        }
+        final int b = (int) getHeadByte();
+        int count;
+        switch (FORMATS[b & 0xff]) {
+        case FIXRAW:
+            return b & 0x1f;
+        case RAW16:
+        case RAW32:
+            count = readRawBodySize(b);
+            break;
+        default:
+            throw unexpected(b);
+        }
+        in.advance();
+        return count;
+    }
+
+    /**
+     * Reads the body of the raw whose header is read by readRawSize(). The
+     * body stays pending until finishRaw() so that it can be read again if
+     * decoding it fails.
+     */
+    private byte[] readRawBytes(int count) throws IOException {
+        if (count == 0) {
+            return new byte[0];
+        } else if (count > 0) {
+            readRawBody(count);
+        } else {
+            readRawBodyCont();
+        }
+        return raw;
+    }
+
+    private void finishRaw() {
+        raw = null;
+        headByte = REQUIRE_TO_READ_HEAD;
+        stack.reduceCount();
     }
 
     private boolean tryReferRawBody(BufferReferer referer, int size) throws IOException {
         return in.tryRefer(referer, size);
     }
 
-    private void readRawBody(int size) throws IOException {
+    private boolean readRawBody(int size) throws IOException {
         raw = new byte[size];
         rawFilled = 0;
-        readRawBodyCont();
+        return readRawBodyCont();
     }
 
-    private void readRawBodyCont() throws IOException {
+    /**
+     * Returns false if the body is incomplete in incremental mode; otherwise
+     * throws EOFException.
+     */
+    private boolean readRawBodyCont() throws IOException {
         int len = in.read(raw, rawFilled, raw.length - rawFilled);
         rawFilled += len;
         if (rawFilled < raw.length) {
+            if (incremental) {
+                return false;
+            }
             throw new EOFException();
         }
+        return true;
     }
 
     @Override
@@ -407,40 +638,22 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
     @Override
     public byte readByte() throws IOException {
-        // optimized not to allocate byteAccept
-        stack.checkCount();
-        readOneWithoutStack(intAccept);
-        int value = intAccept.value;
-        if (value < (int) Byte.MIN_VALUE || value > (int) Byte.MAX_VALUE) {
-            throw new MessageTypeException(); // TODO message
-        }
-        stack.reduceCount();
-        return (byte) value;
+        return (byte) readInteger(Byte.MIN_VALUE, Byte.MAX_VALUE);
     }
 
     @Override
     public short readShort() throws IOException {
-        // optimized not to allocate shortAccept
-        stack.checkCount();
-        readOneWithoutStack(intAccept);
-        int value = intAccept.value;
-        if (value < (int) Short.MIN_VALUE || value > (int) Short.MAX_VALUE) {
-            throw new MessageTypeException(); // TODO message
-        }
-        stack.reduceCount();
-        return (short) value;
+        return (short) readInteger(Short.MIN_VALUE, Short.MAX_VALUE);
     }
 
     @Override
     public int readInt() throws IOException {
-        readOne(intAccept);
-        return intAccept.value;
+        return (int) readInteger(Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     @Override
     public long readLong() throws IOException {
-        readOne(longAccept);
-        return longAccept.value;
+        return readInteger(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     @Override
@@ -451,32 +664,258 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
     @Override
     public float readFloat() throws IOException {
-        readOne(doubleAccept);
-        return (float) doubleAccept.value;
+        return (float) readFloating();
     }
 
     @Override
     public double readDouble() throws IOException {
-        readOne(doubleAccept);
-        return doubleAccept.value;
+        return readFloating();
+    }
+
+    /**
+     * Checks once that the array being read has <tt>len</tt> more elements,
+     * so the bulk reads below decode element headers without the per-value
+     * checks.
+     */
+    private void checkElements(int len) {
+        if (!stack.topIsArray() || stack.getTopCount() < len) {
+            throw new MessageTypeException(
+                    "Array has fewer elements than requested: " + len);
+        }
+        if (len > 0 && raw != null) {
+            throw new MessageTypeException("Unexpected raw value");
+        }
+    }
+
+    @Override
+    public void readShortArray(short[] dst, int off, int len) throws IOException {
+        checkElements(len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = (short) decodeInteger(getHeadByte(), Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void readIntArray(int[] dst, int off, int len) throws IOException {
+        checkElements(len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = (int) decodeInteger(getHeadByte(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void readLongArray(long[] dst, int off, int len) throws IOException {
+        checkElements(len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = decodeInteger(getHeadByte(), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void readFloatArray(float[] dst, int off, int len) throws IOException {
+        checkElements(len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = (float) decodeFloating(getHeadByte());
+        }
+    }
+
+    @Override
+    public void readDoubleArray(double[] dst, int off, int len) throws IOException {
+        checkElements(len);
+        for (int i = off; i < off + len; i++) {
+            dst[i] = decodeFloating(getHeadByte());
+        }
     }
 
     @Override
     public byte[] readByteArray() throws IOException {
-        readOne(byteArrayAccept);
-        return byteArrayAccept.value;
+        byte[] bytes = readRawBytes(readRawSize());
+        finishRaw();
+        return bytes;
+    }
+
+    /**
+     * Returns the raw body as a ByteBuffer. If the input allows it (e.g. a
+     * buffer given to wrap()), the result is a read-only view of the input
+     * and is valid only as long as the input buffer is not modified.
+     */
+    @Override
+    public ByteBuffer readByteBuffer() throws IOException {
+        readOne(byteBufferAccept);
+        return byteBufferAccept.value;
+    }
+
+    /**
+     * Reads the header of a raw for streaming its body. The raw size limit
+     * doesn't apply because the body is never allocated as a whole.
+     */
+    private long readRawHeader() throws IOException {
+        stack.checkCount();
+        final int b = (int) getHeadByte();
+        long count;
+        switch (FORMATS[b & 0xff]) {
+        case FIXRAW:
+            count = b & 0x1f;
+            break;
+        case RAW16:
+            count = in.getShort() & 0xffff;
+            in.advance();
+            break;
+        case RAW32:
+            count = in.getInt() & 0xffffffffL;
+            in.advance();
+            break;
+        default:
+            throw new MessageTypeException("Expected raw but got not raw value");
+        }
+        headByte = REQUIRE_TO_READ_HEAD;
+        stack.reduceCount();
+        return count;
+    }
+
+    private int readRawChunk(byte[] chunk, long remain) throws IOException {
+        int len = (int) Math.min(chunk.length, remain);
+        int n = in.read(chunk, 0, len);
+        if (n <= 0) {
+            throw new EOFException();
+        }
+        return n;
+    }
+
+    @Override
+    public long readRawTo(OutputStream out) throws IOException {
+        if (raw != null) {
+            return super.readRawTo(out);
+        }
+        long count = readRawHeader();
+        byte[] chunk = new byte[(int) Math.min(count, RAW_CHUNK_SIZE)];
+        long remain = count;
+        while (remain > 0) {
+            int n = readRawChunk(chunk, remain);
+            out.write(chunk, 0, n);
+            remain -= n;
+        }
+        return count;
+    }
+
+    @Override
+    public long readRawTo(WritableByteChannel out) throws IOException {
+        if (raw != null) {
+            return super.readRawTo(out);
+        }
+        long count = readRawHeader();
+        byte[] chunk = new byte[(int) Math.min(count, RAW_CHUNK_SIZE)];
+        ByteBuffer bb = ByteBuffer.wrap(chunk);
+        long remain = count;
+        while (remain > 0) {
+            int n = readRawChunk(chunk, remain);
+            bb.limit(n);
+            bb.position(0);
+            while (bb.hasRemaining()) {
+                out.write(bb);
+            }
+            remain -= n;
+        }
+        return count;
+    }
+
+    @Override
+    public InputStream readRawAsInputStream() throws IOException {
+        if (raw != null) {
+            return super.readRawAsInputStream();
+        }
+        rawStream = new RawInputStream(readRawHeader());
+        return rawStream;
+    }
+
+    /**
+     * Body of a raw read from the input on demand. It is closed, discarding
+     * the rest of the body, when the unpacker reads the next header.
+     */
+    private final class RawInputStream extends InputStream {
+        private long remain;
+
+        RawInputStream(long remain) {
+            this.remain = remain;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remain <= 0) {
+                return -1;
+            }
+            byte b = in.readByte();
+            remain--;
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remain <= 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remain));
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            remain -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = Math.min(Math.max(n, 0), remain);
+            in.skip(s);
+            remain -= s;
+            return s;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (rawStream == this) {
+                rawStream = null;
+            }
+            if (remain > 0) {
+                long s = remain;
+                remain = 0;
+                in.skip(s);
+            }
+        }
     }
 
     @Override
     public String readString() throws IOException {
-        readOne(stringAccept);
+        int count = readRawSize();
+        if (count <= 0 || !tryReferRawBody(stringAccept, count)) {
+            stringAccept.acceptRaw(readRawBytes(count));
+        }
+        finishRaw();
         return stringAccept.value;
     }
 
     @Override
     public int readArrayBegin() throws IOException {
-        readOne(arrayAccept);
-        return arrayAccept.size;
+        final int b = readHead();
+        int count;
+        switch (FORMATS[b & 0xff]) {
+        case FIXARRAY:
+            count = b & 0x0f;
+            break;
+        case ARRAY16:
+        case ARRAY32:
+            count = readArraySize(b);
+            in.advance();
+            break;
+        default:
+            throw unexpected(b);
+        }
+        stack.reduceCount();
+        stack.pushArray(count);
+        headByte = REQUIRE_TO_READ_HEAD;
+        return count;
     }
 
     @Override
@@ -501,8 +940,24 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
     @Override
     public int readMapBegin() throws IOException {
-        readOne(mapAccept);
-        return mapAccept.size;
+        final int b = readHead();
+        int count;
+        switch (FORMATS[b & 0xff]) {
+        case FIXMAP:
+            count = b & 0x0f;
+            break;
+        case MAP16:
+        case MAP32:
+            count = readMapSize(b);
+            in.advance();
+            break;
+        default:
+            throw unexpected(b);
+        }
+        stack.reduceCount();
+        stack.pushMap(count);
+        headByte = REQUIRE_TO_READ_HEAD;
+        return count;
     }
 
     @Override
@@ -560,69 +1015,182 @@ public class MessagePackUnpacker extends AbstractUnpacker {
         }
     }
 
+    /**
+     * Reads a value from the next <tt>available</tt> bytes of the input
+     * without throwing when they run out. Progress is kept in the stack,
+     * headByte, the partial raw and <tt>uc</tt>, so the next call continues
+     * where this one stopped.
+     * 
+     * @return true if <tt>uc</tt> holds the complete value
+     */
+    final boolean tryReadValue(Unconverter uc, int available) throws IOException {
+        valueAccept.setUnconverter(uc);
+        if (valueDepth < 0) {
+            valueDepth = stack.getDepth();
+        }
+        final int base = in.getReadByteCount();
+        incremental = true;
+        try {
+            while (true) {
+                while (stack.getDepth() > valueDepth && stack.getTopCount() == 0) {
+                    if (stack.topIsArray()) {
+                        uc.writeArrayEnd(true);
+                    } else {
+                        uc.writeMapEnd(true);
+                    }
+                    stack.pop();
+                }
+                if (uc.getResult() != null) {
+                    valueDepth = -1;
+                    return true;
+                }
+                if (!canReadOne(available - (in.getReadByteCount() - base))) {
+                    return false;
+                }
+                readOne(valueAccept);
+                if (raw != null) {
+                    return false;
+                }
+            }
+        } finally {
+            incremental = false;
+        }
+    }
+
+    /**
+     * Tests if readOne() can proceed with <tt>remain</tt> bytes left in the
+     * input: the whole header must be there, and at least one byte of a raw
+     * body, which may then be read partially.
+     */
+    private boolean canReadOne(int remain) throws IOException {
+        if (raw != null) {
+            return remain > 0;
+        }
+        if (headByte == REQUIRE_TO_READ_HEAD) {
+            if (remain < 1) {
+                return false;
+            }
+            remain--;
+        }
+        final int b = (int) getHeadByte();
+        final byte format = FORMATS[b & 0xff];
+        final int size = HEADER_SIZES[format];
+        if (remain < size) {
+            return false;
+        }
+        switch (format) {
+        case FIXRAW:
+            return (b & 0x1f) == 0 || remain > 0;
+        case RAW16:
+            return (in.getShort() & 0xffff) == 0 || remain > size;
+        case RAW32:
+            return in.getInt() == 0 || remain > size;
+        default:
+            return true;
+        }
+    }
+
+    @Override
+    public void setStringCacheSize(int size) {
+        stringAccept.setCacheSize(size);
+    }
+
     @Override
     public void skip() throws IOException {
         stack.checkCount();
-        if (readOneWithoutStack(skipAccept)) {
-            stack.reduceCount();
-            return;
+        if (raw != null) {
+            // rest of a raw whose reading was interrupted
+            skipBytes = raw.length - rawFilled;
+            raw = null;
+            headByte = REQUIRE_TO_READ_HEAD;
+        } else if (skipCount == 0 && skipBytes == 0) {
+            skipCount = 1;
         }
-        int targetDepth = stack.getDepth() - 1;
+        skipPending();
+        stack.reduceCount();
+    }
+
+    /**
+     * Skips <tt>skipBytes</tt> bytes and then <tt>skipCount</tt> objects
+     * using the headers alone. Progress is kept in the fields so that a
+     * skip interrupted by EndOfBufferException resumes on the next call.
+     */
+    private void skipPending() throws IOException {
         while (true) {
-            while (stack.getTopCount() == 0) {
-                stack.pop();
-                if (stack.getDepth() <= targetDepth) {
-                    return;
-                }
+            if (skipBytes > 0) {
+                in.skip(skipBytes);
+                skipBytes = 0;
+            }
+            if (skipCount == 0) {
+                return;
+            }
+
+            final int b = (int) getHeadByte();
+            final byte format = FORMATS[b & 0xff];
+            switch (format) {
+            case FIXRAW:
+                skipBytes = b & 0x1f;
+                break;
+            case FIXARRAY:
+                skipCount += b & 0x0f;
+                break;
+            case FIXMAP:
+                skipCount += (b & 0x0f) * 2;
+                break;
+            case RAW16:
+            case RAW32:
+            {
+                int count = readRawBodySize(b);
+                in.advance();
+                skipBytes = count;
+                break;
             }
-            readOne(skipAccept);
+            case ARRAY16:
+            case ARRAY32:
+            {
+                int count = readArraySize(b);
+                in.advance();
+                skipCount += count;
+                break;
+            }
+            case MAP16:
+            case MAP32:
+            {
+                int count = readMapSize(b);
+                in.advance();
+                skipCount += (long) count * 2;
+                break;
+            }
+            case INVALID:
+                skipCount = 0;
+                throw invalidByte(b);
+            default:
+                // the rest of a value of fixed size
+                skipBytes = HEADER_SIZES[format];
+            }
+            headByte = REQUIRE_TO_READ_HEAD;
+            skipCount--;
         }
     }
 
     public ValueType getNextType() throws IOException {
         final int b = (int) getHeadByte();
-        if ((b & 0x80) == 0) { // Positive Fixnum
-            return ValueType.INTEGER;
-        }
-        if ((b & 0xe0) == 0xe0) { // Negative Fixnum
+        switch (FORMATS[b & 0xff]) {
+        case FIXINT: case UINT8: case UINT16: case UINT32: case UINT64:
+        case INT8: case INT16: case INT32: case INT64:
             return ValueType.INTEGER;
-        }
-        if ((b & 0xe0) == 0xa0) { // FixRaw
+        case FIXRAW: case RAW16: case RAW32:
             return ValueType.RAW;
-        }
-        if ((b & 0xf0) == 0x90) { // FixArray
+        case FIXARRAY: case ARRAY16: case ARRAY32:
             return ValueType.ARRAY;
-        }
-        if ((b & 0xf0) == 0x80) { // FixMap
+        case FIXMAP: case MAP16: case MAP32:
             return ValueType.MAP;
-        }
-        switch (b & 0xff) {
-        case 0xc0: // nil
+        case NIL:
             return ValueType.NIL;
-        case 0xc2: // false
-        case 0xc3: // true
+        case FALSE: case TRUE:
             return ValueType.BOOLEAN;
-        case 0xca: // float
-        case 0xcb: // double
+        case FLOAT: case DOUBLE:
             return ValueType.FLOAT;
-        case 0xcc: // unsigned int 8
-        case 0xcd: // unsigned int 16
-        case 0xce: // unsigned int 32
-        case 0xcf: // unsigned int 64
-        case 0xd0: // signed int 8
-        case 0xd1: // signed int 16
-        case 0xd2: // signed int 32
-        case 0xd3: // signed int 64
-            return ValueType.INTEGER;
-        case 0xda: // raw 16
-        case 0xdb: // raw 32
-            return ValueType.RAW;
-        case 0xdc: // array 16
-        case 0xdd: // array 32
-            return ValueType.ARRAY;
-        case 0xde: // map 16
-        case 0xdf: // map 32
-            return ValueType.MAP;
         default:
             throw new IOException("Invalid byte: " + b); // TODO error FormatException
         }
@@ -630,6 +1198,10 @@ public class MessagePackUnpacker extends AbstractUnpacker {
 
     public void reset() {
         raw = null;
+        valueDepth = -1;
+        rawStream = null;
+        skipCount = 0;
+        skipBytes = 0;
         stack.clear();
     }
 
@@ -26,8 +26,19 @@ import java.nio.charset.CodingErrorAction;
 import org.msgpack.MessageTypeException;
 
 final class StringAccept extends Accept {
+    // longest string kept in the cache, in bytes
+    static final int MAX_CACHED_LENGTH = 64;
+
+    // longest string decoded through the reusable scratch array
+    private static final int MAX_SCRATCH_LENGTH = 8192;
+
     String value;
     private CharsetDecoder decoder;
+    private char[] chars = new char[MAX_CACHED_LENGTH];
+
+    // direct-mapped cache of short strings, null if disabled
+    private byte[][] cacheKeys;
+    private String[] cacheValues;
 
     public StringAccept() {
         this.decoder = Charset.forName("UTF-8").newDecoder()
@@ -35,13 +46,23 @@ final class StringAccept extends Accept {
                 .onUnmappableCharacter(CodingErrorAction.REPORT);
     }
 
+    void setCacheSize(int size) {
+        if (size <= 0) {
+            cacheKeys = null;
+            cacheValues = null;
+            return;
+        }
+        int n = Integer.highestOneBit(size);
+        if (n < size) {
+            n <<= 1;
+        }
+        cacheKeys = new byte[n][];
+        cacheValues = new String[n];
+    }
+
     @Override
     void acceptRaw(byte[] raw) {
-        try {
-            this.value = decoder.decode(ByteBuffer.wrap(raw)).toString();
-        } catch (CharacterCodingException ex) {
-            throw new MessageTypeException(ex);
-        }
+        this.value = decode(raw, 0, raw.length);
     }
 
     @Override
@@ -51,8 +72,88 @@ final class StringAccept extends Accept {
 
     @Override
     public void refer(ByteBuffer bb, boolean gift) throws IOException {
+        if (bb.hasArray()) {
+            this.value = decode(bb.array(), bb.arrayOffset() + bb.position(),
+                    bb.remaining());
+        } else {
+            this.value = decodeDirect(bb);
+        }
+    }
+
+    private String decode(byte[] b, int off, int len) {
+        if (cacheKeys == null || len > MAX_CACHED_LENGTH) {
+            return decodeUtf8(b, off, len);
+        }
+        int h = 0;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + b[i];
+        }
+        int index = (h ^ (h >>> 16)) & (cacheKeys.length - 1);
+        byte[] key = cacheKeys[index];
+        if (key != null && equals(key, b, off, len)) {
+            return cacheValues[index];
+        }
+        String s = decodeUtf8(b, off, len);
+        key = new byte[len];
+        System.arraycopy(b, off, key, 0, len);
+        cacheKeys[index] = key;
+        cacheValues[index] = s;
+        return s;
+    }
+
+    private static boolean equals(byte[] key, byte[] b, int off, int len) {
+        if (key.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (key[i] != b[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decodeUtf8(byte[] b, int off, int len) {
+        if (len > MAX_SCRATCH_LENGTH) {
+            return decodeUtf8(ByteBuffer.wrap(b, off, len));
+        }
+        if (chars.length < len) {
+            chars = new char[Math.max(len, chars.length * 2)];
+        }
+        // ASCII fast path
+        for (int i = 0; i < len; i++) {
+            byte c = b[off + i];
+            if (c < 0) {
+                return decodeUtf8(ByteBuffer.wrap(b, off, len));
+            }
+            chars[i] = (char) c;
+        }
+        return new String(chars, 0, len);
+    }
+
+    private String decodeDirect(ByteBuffer bb) {
+        int len = bb.remaining();
+        if (len > MAX_SCRATCH_LENGTH) {
+            return decodeUtf8(bb);
+        }
+        if (chars.length < len) {
+            chars = new char[Math.max(len, chars.length * 2)];
+        }
+        // ASCII fast path
+        int pos = bb.position();
+        for (int i = 0; i < len; i++) {
+            byte c = bb.get(pos + i);
+            if (c < 0) {
+                return decodeUtf8(bb);
+            }
+            chars[i] = (char) c;
+        }
+        return new String(chars, 0, len);
+    }
+
+    private String decodeUtf8(ByteBuffer bb) {
         try {
-            this.value = decoder.decode(bb).toString();
+            return decoder.decode(bb).toString();
         } catch (CharacterCodingException ex) {
             throw new MessageTypeException(ex);
         }
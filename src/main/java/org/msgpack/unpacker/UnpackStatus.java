@@ -17,11 +17,9 @@
 //
 package org.msgpack.unpacker;
 
-final class MapAccept extends Accept {
-    int size;
-
-    @Override
-    void acceptMap(int size) {
-        this.size = size;
-    }
+/**
+ * Result of {@link MessagePackBufferUnpacker#tryReadValue()}.
+ */
+public enum UnpackStatus {
+    NEED_MORE_INPUT, VALUE_READY;
 }
@@ -19,7 +19,10 @@ package org.msgpack.unpacker;
 
 import java.io.IOException;
 import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.math.BigInteger;
 import java.lang.Iterable;
 
@@ -75,10 +78,46 @@ public interface Unpacker extends Iterable<Value>, Closeable {
 
     public double readDouble() throws IOException;
 
+    /**
+     * Reads the next <tt>len</tt> elements of the array being read into
+     * <tt>dst</tt> from <tt>off</tt>, as {@link #readShort()} would one by
+     * one.
+     */
+    public void readShortArray(short[] dst, int off, int len) throws IOException;
+
+    public void readIntArray(int[] dst, int off, int len) throws IOException;
+
+    public void readLongArray(long[] dst, int off, int len) throws IOException;
+
+    public void readFloatArray(float[] dst, int off, int len) throws IOException;
+
+    public void readDoubleArray(double[] dst, int off, int len) throws IOException;
+
     public byte[] readByteArray() throws IOException;
 
     public ByteBuffer readByteBuffer() throws IOException;
 
+    /**
+     * Reads a raw and writes its body to <tt>out</tt> in bounded chunks.
+     * 
+     * @return length of the raw
+     */
+    public long readRawTo(OutputStream out) throws IOException;
+
+    /**
+     * Reads a raw and writes its body to <tt>out</tt> in bounded chunks.
+     * 
+     * @return length of the raw
+     */
+    public long readRawTo(WritableByteChannel out) throws IOException;
+
+    /**
+     * Reads the header of a raw and returns a stream of its body. The body is
+     * read from the underlying input on demand. The next read from this
+     * unpacker discards the part of the body not read from the stream.
+     */
+    public InputStream readRawAsInputStream() throws IOException;
+
     public String readString() throws IOException;
 
     public Value readValue() throws IOException;
@@ -96,4 +135,11 @@ public interface Unpacker extends Iterable<Value>, Closeable {
     public void setArraySizeLimit(int size);
 
     public void setMapSizeLimit(int size);
+
+    /**
+     * Enables a cache of up to <tt>size</tt> short strings, such as map keys,
+     * that returns the same String instance for the same bytes. 0 disables it
+     * (default).
+     */
+    public void setStringCacheSize(int size);
 }
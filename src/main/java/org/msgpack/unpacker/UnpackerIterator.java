@@ -38,6 +38,15 @@ public class UnpackerIterator implements Iterator<Value> {
         if (uc.getResult() != null) {
             return true;
         }
+        if (u instanceof MessagePackBufferUnpacker) {
+            // incomplete data is not an error for fed buffers
+            try {
+                return ((MessagePackBufferUnpacker) u).tryReadValue(uc);
+            } catch (IOException ex) {
+                exception = ex;
+                return false;
+            }
+        }
         try {
             u.readValue(uc);
         } catch (EOFException ex) {
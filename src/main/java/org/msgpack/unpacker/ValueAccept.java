@@ -98,7 +98,10 @@ final class ValueAccept extends Accept {
 
     @Override
     public void refer(ByteBuffer bb, boolean gift) throws IOException {
-        // TODO gift
+        if (gift) {
+            uc.write(ValueFactory.createRawValue(bb, true));
+            return;
+        }
         byte[] raw = new byte[bb.remaining()];
         bb.get(raw);
         uc.write(ValueFactory.createRawValue(raw, true));
@@ -17,12 +17,19 @@
 //
 package org.msgpack.util.json;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import org.msgpack.MessagePack;
+import org.msgpack.io.ByteBufferOutput;
+import org.msgpack.io.CountingOutput;
 import org.msgpack.packer.Packer;
 import org.msgpack.packer.BufferPacker;
+import org.msgpack.template.Template;
 import org.msgpack.unpacker.Unpacker;
 import org.msgpack.unpacker.BufferUnpacker;
 
@@ -40,6 +47,35 @@ public class JSON extends MessagePack {
         return new JSONPacker(this, stream);
     }
 
+    @Override
+    public Packer createPacker(OutputStream stream, int bufferSize) {
+        return new JSONPacker(this, stream);
+    }
+
+    @Override
+    public Packer createPacker(WritableByteChannel channel) {
+        return new JSONPacker(this, Channels.newOutputStream(channel));
+    }
+
+    @Override
+    public Packer createPacker(ByteBuffer buffer) {
+        return new JSONPacker(this, new ByteBufferOutput(buffer));
+    }
+
+    @Override
+    public <T> long encodedSize(T v) throws IOException {
+        CountingOutput counter = new CountingOutput();
+        new JSONPacker(this, counter).write(v);
+        return counter.getCount();
+    }
+
+    @Override
+    public <T> long encodedSize(T v, Template<T> template) throws IOException {
+        CountingOutput counter = new CountingOutput();
+        template.write(new JSONPacker(this, counter), v);
+        return counter.getCount();
+    }
+
     @Override
     public BufferPacker createBufferPacker() {
         return new JSONBufferPacker(this);
@@ -55,6 +91,16 @@ public class JSON extends MessagePack {
         return new JSONUnpacker(this, stream);
     }
 
+    @Override
+    public Unpacker createUnpacker(InputStream stream, int bufferSize) {
+        return new JSONUnpacker(this, stream);
+    }
+
+    @Override
+    public Unpacker createUnpacker(FileChannel channel) {
+        return new JSONUnpacker(this, Channels.newInputStream(channel));
+    }
+
     @Override
     public BufferUnpacker createBufferUnpacker() {
         return new JSONBufferUnpacker();
@@ -17,8 +17,12 @@
 //
 package org.msgpack.util.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 import org.msgpack.MessagePack;
-import org.msgpack.io.LinkedBufferOutput;
+import org.msgpack.io.ArrayBufferOutput;
 import org.msgpack.packer.BufferPacker;
 
 public class JSONBufferPacker extends JSONPacker implements BufferPacker {
@@ -37,19 +41,31 @@ public class JSONBufferPacker extends JSONPacker implements BufferPacker {
     }
 
     public JSONBufferPacker(MessagePack msgpack, int bufferSize) {
-        super(msgpack, new LinkedBufferOutput(bufferSize));
+        super(msgpack, new ArrayBufferOutput(bufferSize, msgpack.getChunkPool()));
     }
 
     public int getBufferSize() {
-        return ((LinkedBufferOutput) out).getSize();
+        return ((ArrayBufferOutput) out).getSize();
     }
 
     public byte[] toByteArray() {
-        return ((LinkedBufferOutput) out).toByteArray();
+        return ((ArrayBufferOutput) out).toByteArray();
+    }
+
+    public ByteBuffer toByteBuffer() {
+        return ((ArrayBufferOutput) out).toByteBuffer();
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        ((ArrayBufferOutput) out).writeTo(stream);
+    }
+
+    public byte[] getBufferArray() {
+        return ((ArrayBufferOutput) out).getArray();
     }
 
     public void clear() {
         reset();
-        ((LinkedBufferOutput) out).clear();
+        ((ArrayBufferOutput) out).clear();
     }
 }
@@ -203,6 +203,12 @@ public class JSONPacker extends AbstractPacker {
         return this;
     }
 
+    @Override
+    public Packer writeArrayBegin() throws IOException {
+        // JSON needs no size
+        return writeArrayBegin(0);
+    }
+
     @Override
     public Packer writeArrayEnd(boolean check) throws IOException {
         if (!stack.topIsArray()) {
@@ -236,6 +242,11 @@ public class JSONPacker extends AbstractPacker {
         return this;
     }
 
+    @Override
+    public Packer writeMapBegin() throws IOException {
+        return writeMapBegin(0);
+    }
+
     @Override
     public Packer writeMapEnd(boolean check) throws IOException {
         if (!stack.topIsMap()) {
@@ -0,0 +1,195 @@
+package org.msgpack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import org.junit.Test;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.BufferUnpacker;
+import org.msgpack.unpacker.Unpacker;
+
+
+public class TestBulkPrimitiveArray {
+    private static final long[] BOUNDARIES = { 0, 1, -1, 31, -32, -33, 127,
+            128, -128, -129, 255, 256, 32767, -32768, -32769, 65535, 65536,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 32, -(1L << 31) - 1,
+            Long.MAX_VALUE, Long.MIN_VALUE };
+
+    private static long[] longs(int n) {
+        Random rand = new Random(n);
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++) {
+            long v = BOUNDARIES[rand.nextInt(BOUNDARIES.length)];
+            a[i] = rand.nextBoolean() ? v : v >> rand.nextInt(64);
+        }
+        return a;
+    }
+
+    @Test
+    public void testSameBytesAsElementWise() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (int n : new int[] { 0, 1, 15, 16, 2000 }) {
+            long[] l = longs(n);
+            int[] i = new int[n];
+            short[] s = new short[n];
+            float[] f = new float[n];
+            double[] d = new double[n];
+            for (int k = 0; k < n; k++) {
+                i[k] = (int) l[k];
+                s[k] = (short) l[k];
+                f[k] = l[k] / 3.0f;
+                d[k] = l[k] / 7.0;
+            }
+
+            BufferPacker expected = msgpack.createBufferPacker();
+            expected.writeArrayBegin(5);
+            expected.writeArrayBegin(n);
+            for (short v : s) {
+                expected.write(v);
+            }
+            expected.writeArrayEnd();
+            expected.writeArrayBegin(n);
+            for (int v : i) {
+                expected.write(v);
+            }
+            expected.writeArrayEnd();
+            expected.writeArrayBegin(n);
+            for (long v : l) {
+                expected.write(v);
+            }
+            expected.writeArrayEnd();
+            expected.writeArrayBegin(n);
+            for (float v : f) {
+                expected.write(v);
+            }
+            expected.writeArrayEnd();
+            expected.writeArrayBegin(n);
+            for (double v : d) {
+                expected.write(v);
+            }
+            expected.writeArrayEnd();
+            expected.writeArrayEnd();
+            byte[] bytes = expected.toByteArray();
+
+            BufferPacker packer = msgpack.createBufferPacker();
+            packer.writeArrayBegin(5);
+            packer.write(s, 0, n);
+            packer.write(i, 0, n);
+            packer.write(l, 0, n);
+            packer.write(f, 0, n);
+            packer.write(d, 0, n);
+            packer.writeArrayEnd(true);
+            assertArrayEquals(bytes, packer.toByteArray());
+
+            Unpacker u = msgpack.createUnpacker(new ByteArrayInputStream(bytes), 16);
+            assertEquals(5, u.readArrayBegin());
+            short[] s2 = new short[n + 1];
+            assertEquals(n, u.readArrayBegin());
+            u.readShortArray(s2, 1, n);
+            u.readArrayEnd(true);
+            int[] i2 = new int[n];
+            assertEquals(n, u.readArrayBegin());
+            u.readIntArray(i2, 0, n);
+            u.readArrayEnd(true);
+            long[] l2 = new long[n];
+            assertEquals(n, u.readArrayBegin());
+            u.readLongArray(l2, 0, n);
+            u.readArrayEnd(true);
+            float[] f2 = new float[n];
+            assertEquals(n, u.readArrayBegin());
+            u.readFloatArray(f2, 0, n);
+            u.readArrayEnd(true);
+            double[] d2 = new double[n];
+            assertEquals(n, u.readArrayBegin());
+            u.readDoubleArray(d2, 0, n);
+            u.readArrayEnd(true);
+            u.readArrayEnd(true);
+
+            for (int k = 0; k < n; k++) {
+                assertEquals(s[k], s2[k + 1]);
+                assertEquals(f[k], f2[k], 0.0f);
+            }
+            assertArrayEquals(i, i2);
+            assertArrayEquals(l, l2);
+            assertArrayEquals(d, d2, 0.0);
+        }
+    }
+
+    @Test
+    public void testSubrangeAndChecks() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        int[] a = { 1, 2, 3, 4, 5 };
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(a, 1, 3);
+        packer.write((int[]) null, 0, 0);
+        BufferUnpacker u = msgpack.createBufferUnpacker(packer.toByteArray());
+        assertEquals(3, u.readArrayBegin());
+        int[] dst = new int[4];
+        try {
+            u.readIntArray(dst, 0, 4);
+            fail();
+        } catch (MessageTypeException e) {
+        }
+        u.readIntArray(dst, 1, 3);
+        u.readArrayEnd(true);
+        assertArrayEquals(new int[] { 0, 2, 3, 4 }, dst);
+        u.readNil();
+
+        packer.clear();
+        packer.write(new double[] { 1.5 }, 0, 1);
+        u = msgpack.createBufferUnpacker(packer.toByteArray());
+        u.readArrayBegin();
+        try {
+            u.readIntArray(dst, 0, 1);
+            fail();
+        } catch (MessageTypeException e) {
+        }
+    }
+
+    @Test
+    public void testOutOfBoundsWritesNothing() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        int[][] ranges = { { 0, -1 }, { -1, 2 }, { 3, 3 }, { 0, 6 },
+                { 1, Integer.MAX_VALUE }, { Integer.MAX_VALUE, Integer.MAX_VALUE } };
+        for (int[] r : ranges) {
+            try {
+                packer.write(new short[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            try {
+                packer.write(new int[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            try {
+                packer.write(new long[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            try {
+                packer.write(new float[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            try {
+                packer.write(new double[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            try {
+                packer.write(new byte[5], r[0], r[1]);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+            }
+            assertEquals(0, packer.getBufferSize());
+        }
+        packer.write(new int[5], 5, 0);
+        assertArrayEquals(new byte[] { (byte) 0x90 }, packer.toByteArray());
+    }
+}
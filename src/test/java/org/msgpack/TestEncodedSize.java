@@ -0,0 +1,140 @@
+package org.msgpack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.msgpack.packer.Packer;
+import org.msgpack.packer.SizeCalculatingPacker;
+import org.msgpack.template.Templates;
+import org.msgpack.util.json.JSON;
+
+
+public class TestEncodedSize {
+    private static List<Object> values() {
+        List<Object> values = new ArrayList<Object>();
+        values.add(0);
+        values.add(-33);
+        values.add(Integer.MIN_VALUE);
+        values.add(Long.MAX_VALUE);
+        values.add(BigInteger.ONE.shiftLeft(63));
+        values.add(1.5f);
+        values.add(2.5);
+        values.add(true);
+        values.add("");
+        values.add("\u3042\u3044\u3046 and ascii");
+        values.add(new String(new char[70000]).replace('\0', 'x'));
+        values.add(new byte[40]);
+        values.add(new int[] { 1, 300, 70000, -5 });
+        values.add(new double[100]);
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("list", new ArrayList<Object>(values));
+        map.put("nested", new LinkedHashMap<String, Object>(map));
+        values.add(map);
+        return values;
+    }
+
+    @Test
+    public void testSameAsWrittenLength() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (Object v : values()) {
+            assertEquals(msgpack.write(v).length, msgpack.encodedSize(v));
+        }
+        assertEquals(1, msgpack.encodedSize(null));
+        assertEquals(msgpack.write("abc", Templates.TString).length,
+                msgpack.encodedSize("abc", Templates.TString));
+    }
+
+    @Test
+    public void testPacker() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        SizeCalculatingPacker packer = new SizeCalculatingPacker(msgpack);
+        packer.writeArrayBegin(2);
+        packer.write("key");
+        packer.write(1);
+        packer.writeArrayEnd(true);
+        assertEquals(6, packer.getSize());
+        packer.reset();
+        packer.write(1000);
+        assertEquals(3, packer.getSize());
+    }
+
+    @Test
+    public void testWriteIntoByteBuffer() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (Object v : values()) {
+            byte[] expected = msgpack.write(v);
+            int size = (int) msgpack.encodedSize(v);
+            for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(size + 3),
+                    ByteBuffer.allocateDirect(size + 3) }) {
+                bb.position(3);
+                msgpack.write(bb, v);
+                assertEquals(0, bb.remaining());
+                bb.position(3);
+                byte[] written = new byte[size];
+                bb.get(written);
+                assertArrayEquals(expected, written);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteIntoLittleEndianByteBuffer() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (Object v : values()) {
+            byte[] expected = msgpack.write(v);
+            for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(expected.length),
+                    ByteBuffer.allocateDirect(expected.length) }) {
+                bb.order(ByteOrder.LITTLE_ENDIAN);
+                msgpack.write(bb, v);
+                assertEquals(ByteOrder.LITTLE_ENDIAN, bb.order());
+                bb.flip();
+                byte[] written = new byte[expected.length];
+                bb.get(written);
+                assertArrayEquals(expected, written);
+            }
+        }
+
+        ByteBuffer bb = ByteBuffer.allocate(3).order(ByteOrder.LITTLE_ENDIAN);
+        msgpack.write(bb, 1000);
+        assertArrayEquals(new byte[] { (byte) 0xcd, 0x03, (byte) 0xe8 }, bb.array());
+        assertEquals(1000, msgpack.read(bb.array(), Integer.class).intValue());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        ByteBuffer bb = ByteBuffer.allocate(4);
+        Packer packer = msgpack.createPacker(bb);
+        packer.write(1);
+        try {
+            packer.write("four");
+            fail();
+        } catch (BufferOverflowException e) {
+        }
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        JSON json = new JSON();
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("a", new int[] { 1, 2 });
+        map.put("b", "\u3042");
+        byte[] expected = json.write(map);
+        assertEquals(expected.length, json.encodedSize(map));
+
+        ByteBuffer bb = ByteBuffer.allocate(expected.length);
+        json.write(bb, map);
+        assertArrayEquals(expected, bb.array());
+    }
+}
@@ -0,0 +1,121 @@
+package org.msgpack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.Packer;
+import org.msgpack.util.json.JSON;
+
+
+public class TestPreEncoded {
+    private static Map<String, Object> document() {
+        Map<String, Object> doc = new HashMap<String, Object>();
+        List<Object> list = new ArrayList<Object>();
+        list.add(1);
+        list.add("two");
+        list.add(3.0);
+        doc.put("list", list);
+        doc.put("name", "sub-document");
+        return doc;
+    }
+
+    @Test
+    public void testSameBytesAsWrite() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        Map<String, Object> doc = document();
+        byte[] encoded = msgpack.write(doc);
+
+        BufferPacker expected = msgpack.createBufferPacker();
+        expected.writeArrayBegin(3);
+        expected.write(doc);
+        expected.write(doc);
+        expected.write(doc);
+        expected.writeArrayEnd(true);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+        direct.put(encoded).flip();
+        ByteBuffer heap = ByteBuffer.wrap(encoded);
+
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeArrayBegin(3);
+        packer.writePreEncoded(encoded);
+        packer.writePreEncoded(direct, true);
+        packer.writePreEncoded(heap);
+        packer.writeArrayEnd(true);
+        assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+        assertEquals(0, direct.position());
+        assertEquals(0, heap.position());
+    }
+
+    @Test
+    public void testUnknownSizeArray() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] encoded = msgpack.write(document());
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeArrayBegin();
+        packer.writePreEncoded(encoded);
+        packer.writePreEncoded(encoded);
+        packer.writeArrayEnd(true);
+        assertEquals(2, msgpack.read(packer.toByteArray()).asArrayValue().size());
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] encoded = msgpack.write("value");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Packer packer = msgpack.createPacker(out);
+        packer.writePreEncoded(encoded);
+        // drained at the end of the top-level value
+        assertArrayEquals(encoded, out.toByteArray());
+    }
+
+    @Test
+    public void testCheck() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] encoded = msgpack.write(document());
+
+        byte[] twoObjects = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, twoObjects, 0, encoded.length);
+        twoObjects[encoded.length] = (byte) 0xc0;
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        for (byte[] b : new byte[][] { twoObjects, truncated, new byte[0] }) {
+            BufferPacker packer = msgpack.createBufferPacker();
+            try {
+                packer.writePreEncoded(b, true);
+                fail();
+            } catch (MessageTypeException e) {
+            }
+            assertEquals(0, packer.getBufferSize());
+        }
+
+        // without the check the bytes are copied as they are
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writePreEncoded(twoObjects);
+        assertArrayEquals(twoObjects, packer.toByteArray());
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] encoded = msgpack.write(new int[] { 1, 2 });
+        JSON json = new JSON();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Packer packer = json.createPacker(out);
+        packer.writePreEncoded(encoded);
+        packer.flush();
+        assertEquals("[1,2]", new String(out.toByteArray(), "UTF-8"));
+    }
+}
@@ -0,0 +1,99 @@
+package org.msgpack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+
+import org.junit.Test;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.Packer;
+import org.msgpack.util.json.JSON;
+
+
+public class TestUnknownSizeContainer {
+    private static void writeNested(Packer packer, int size, boolean known)
+            throws Exception {
+        if (known) {
+            packer.writeMapBegin(size);
+        } else {
+            packer.writeMapBegin();
+        }
+        for (int i = 0; i < size; i++) {
+            packer.write("key" + i);
+            if (known) {
+                packer.writeArrayBegin(i % 20);
+            } else {
+                packer.writeArrayBegin();
+            }
+            for (int j = 0; j < i % 20; j++) {
+                packer.write(BigInteger.valueOf(j));
+            }
+            packer.writeArrayEnd(true);
+        }
+        packer.writeMapEnd(true);
+    }
+
+    @Test
+    public void testSameBytesAsKnownSize() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (int size : new int[] { 0, 1, 15, 16, 65535, 65536 }) {
+            BufferPacker expected = msgpack.createBufferPacker();
+            writeNested(expected, size, true);
+            expected.write(1);
+            BufferPacker packer = msgpack.createBufferPacker();
+            writeNested(packer, size, false);
+            packer.write(1);
+            assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testLargeArray() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeArrayBegin();
+        for (int i = 0; i < 100000; i++) {
+            packer.write(i);
+        }
+        packer.writeArrayEnd();
+        int[] read = msgpack.read(packer.toByteArray(), int[].class);
+        assertEquals(100000, read.length);
+        assertEquals(99999, read[99999]);
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        Packer stream = msgpack.createPacker(new ByteArrayOutputStream());
+        try {
+            stream.writeArrayBegin();
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeMapBegin();
+        packer.write("key");
+        try {
+            packer.writeMapEnd();
+            fail();
+        } catch (MessageTypeException e) {
+        }
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        BufferPacker packer = new JSON().createBufferPacker();
+        packer.writeMapBegin();
+        packer.write("a");
+        packer.writeArrayBegin();
+        packer.write(1);
+        packer.write(2);
+        packer.writeArrayEnd();
+        packer.writeMapEnd();
+        assertEquals("{\"a\":[1,2]}", new String(packer.toByteArray(), "UTF-8"));
+    }
+}
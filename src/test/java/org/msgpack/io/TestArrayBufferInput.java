@@ -0,0 +1,136 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestArrayBufferInput {
+    @Test
+    public void testGetPrimitives() throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream o = new DataOutputStream(bo);
+        o.writeByte((byte)2);
+        o.writeShort((short)-2);
+        o.writeInt(-2);
+        o.writeLong(Long.MIN_VALUE + 2L);
+        o.writeFloat(1.1f);
+        o.writeDouble(-1.1);
+        o.writeShort((short)0xff80);
+        o.writeInt(0x80ff00ff);
+        byte[] src = bo.toByteArray();
+
+        ArrayBufferInput b = new ArrayBufferInput();
+
+        for(int i=0; i < 2; i++) {
+            b.wrap(src, 0, src.length);
+
+            assertEquals((byte)2, b.getByte());
+            assertEquals((byte)2, b.getByte());
+            b.advance();
+            assertEquals((short)-2, b.getShort());
+            b.advance();
+            assertEquals(-2, b.getInt());
+            b.advance();
+            assertEquals(Long.MIN_VALUE + 2L, b.getLong());
+            b.advance();
+            assertEquals(1.1f, b.getFloat(), 0.000001f);
+            b.advance();
+            assertEquals(-1.1, b.getDouble(), 0.000001);
+            b.advance();
+            assertEquals((short)0xff80, b.getShort());
+            b.advance();
+            assertEquals(0x80ff00ff, b.getInt());
+            b.advance();
+            assertEndOfBuffer(b);
+        }
+        assertEquals(src.length * 2, b.getReadByteCount());
+    }
+
+    @Test
+    public void testWrapOffset() throws IOException {
+        byte[] src = new byte[] { 1, 2, 3, 4, 5, 6 };
+        ArrayBufferInput b = new ArrayBufferInput();
+        b.wrap(src, 2, 3);
+        assertEquals(3, b.getSize());
+        assertEquals((byte)3, b.readByte());
+
+        byte[] dst = new byte[4];
+        assertEquals(2, b.read(dst, 0, 4));
+        assertEquals((byte)4, dst[0]);
+        assertEquals((byte)5, dst[1]);
+        assertEquals(0, b.getSize());
+        assertEndOfBuffer(b);
+    }
+
+    @Test
+    public void testWrapByteBuffer() throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3 });
+        bb.position(1);
+        ArrayBufferInput b = new ArrayBufferInput();
+        b.wrap(bb.slice());
+        assertEquals((byte)1, b.readByte());
+
+        ByteBuffer src = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        b.wrap(src);
+        b.readByte();
+        assertEquals(1, src.position());
+        b.getShort();
+        b.advance();
+        assertEquals(3, src.position());
+    }
+
+    @Test
+    public void testTryRefer() throws IOException {
+        byte[] src = new byte[] { 1, 2, 3, 4, 5 };
+        ArrayBufferInput b = new ArrayBufferInput();
+        b.wrap(src, 0, src.length);
+        final byte[] referred = new byte[3];
+        boolean success = b.tryRefer(new BufferReferer() {
+            public void refer(ByteBuffer bb, boolean gift) {
+                bb.get(referred);
+            }
+        }, 3);
+        assertEquals(true, success);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, referred);
+        assertEquals((byte)4, b.readByte());
+        assertEquals(false, b.tryRefer(null, 2));
+    }
+
+    @Test
+    public void testFeedAfterWrap() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker pk = msgpack.createBufferPacker();
+        pk.write("first");
+        pk.write(123456789L);
+        pk.write("second");
+        byte[] raw = pk.toByteArray();
+
+        BufferUnpacker u = msgpack.createBufferUnpacker();
+        u.resetReadByteCount();
+        u.wrap(raw, 0, 8);
+        assertEquals("first", u.readString());
+        u.feed(raw, 8, raw.length - 8);
+        assertEquals(123456789L, u.readLong());
+        assertEquals("second", u.readString());
+        assertEquals(raw.length, u.getReadByteCount());
+    }
+
+    private void assertEndOfBuffer(ArrayBufferInput b) throws IOException {
+        try {
+            b.readByte();
+            fail();
+        } catch(EndOfBufferException eof) {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestArrayBufferOutput {
+    @Test
+    public void testWritePrimitives() throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream o = new DataOutputStream(bo);
+        ArrayBufferOutput b = new ArrayBufferOutput(9);
+        for (int i = 0; i < 50; i++) {
+            o.writeByte((byte) 1);
+            o.writeShort((short) -2);
+            o.writeInt(i);
+            o.writeLong(-4L * i);
+            o.writeFloat(1.1f);
+            o.writeDouble(1.1);
+            o.writeByte((byte) 0xcd);
+            o.writeInt(0x12345678);
+            o.write(new byte[] { 7, 8, 9 });
+            b.writeByte((byte) 1);
+            b.writeShort((short) -2);
+            b.writeInt(i);
+            b.writeLong(-4L * i);
+            b.writeFloat(1.1f);
+            b.writeDouble(1.1);
+            b.writeByteAndInt((byte) 0xcd, 0x12345678);
+            b.write(ByteBuffer.wrap(new byte[] { 7, 8, 9 }));
+        }
+        byte[] expected = bo.toByteArray();
+        assertEquals(expected.length, b.getSize());
+        assertArrayEquals(expected, b.toByteArray());
+        assertEquals(ByteBuffer.wrap(expected), b.toByteBuffer());
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        b.writeTo(copy);
+        assertArrayEquals(expected, copy.toByteArray());
+    }
+
+    @Test
+    public void testClearKeepsCapacity() throws IOException {
+        ArrayBufferOutput b = new ArrayBufferOutput(16);
+        b.write(new byte[100], 0, 100);
+        byte[] array = b.getArray();
+        b.clear();
+        assertEquals(0, b.getSize());
+        b.write(new byte[100], 0, 100);
+        assertSame(array, b.getArray());
+    }
+
+    @Test
+    public void testBufferPacker() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker(16);
+        for (int i = 0; i < 100; i++) {
+            packer.write("string" + i);
+        }
+        byte[] bytes = packer.toByteArray();
+        assertEquals(bytes.length, packer.getBufferSize());
+
+        ByteBuffer view = packer.toByteBuffer();
+        assertEquals(ByteBuffer.wrap(bytes), view);
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(
+                packer.getBufferArray(), 0, packer.getBufferSize());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("string" + i, unpacker.readString());
+        }
+
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        packer.writeTo(bo);
+        assertArrayEquals(bytes, bo.toByteArray());
+    }
+
+    private static class RecordingPool extends ThreadLocalChunkPool {
+        final List<byte[]> allocated = new ArrayList<byte[]>();
+        final List<byte[]> released = new ArrayList<byte[]>();
+
+        @Override
+        public byte[] allocate(int size) {
+            byte[] b = super.allocate(size);
+            allocated.add(b);
+            return b;
+        }
+
+        @Override
+        public void release(byte[] chunk) {
+            released.add(chunk);
+            super.release(chunk);
+        }
+    }
+
+    @Test
+    public void testCloseReleasesArrayToPool() throws IOException {
+        RecordingPool pool = new RecordingPool();
+        ArrayBufferOutput b = new ArrayBufferOutput(64, pool);
+        b.write(new byte[1000], 0, 1000);
+        byte[] array = b.getArray();
+        assertEquals(0, pool.released.size());
+
+        // only the live array goes back; outgrown ones are left to the GC
+        b.close();
+        assertEquals(1, pool.released.size());
+        assertSame(array, pool.released.get(0));
+        assertEquals(0, b.getSize());
+
+        b.writeInt(1);
+        assertEquals(4, b.getSize());
+        b.close();
+        assertEquals(2, pool.released.size());
+    }
+
+    @Test
+    public void testMessagePackWriteReturnsArrayToPool() throws IOException {
+        RecordingPool pool = new RecordingPool();
+        MessagePack msgpack = new MessagePack();
+        msgpack.setChunkPool(pool);
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new byte[] { (byte) i }, msgpack.write(i));
+        }
+        assertEquals(10, pool.allocated.size());
+        assertEquals(pool.allocated, pool.released);
+    }
+}
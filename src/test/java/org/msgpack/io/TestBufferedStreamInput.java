@@ -0,0 +1,138 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.Unpacker;
+
+
+public class TestBufferedStreamInput {
+    @Test
+    public void testGetPrimitives() throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream o = new DataOutputStream(bo);
+        for(int i=0; i < 3; i++) {
+            o.writeByte((byte)2);
+            o.writeShort((short)2);
+            o.writeInt(2);
+            o.writeLong(2L);
+            o.writeFloat(1.1f);
+            o.writeDouble(1.1);
+        }
+        byte[] src = bo.toByteArray();
+
+        BufferedStreamInput b = new BufferedStreamInput(trickle(src), 9);
+
+        for(int i=0; i < 3; i++) {
+            assertEquals((byte)2, b.getByte());
+            b.advance();
+            assertEquals((short)2, b.getShort());
+            b.advance();
+            assertEquals(2, b.getInt());
+            b.advance();
+            assertEquals(2L, b.getLong());
+            b.advance();
+            assertEquals(1.1f, b.getFloat(), 0.000001f);
+            b.advance();
+            assertEquals(1.1, b.getDouble(), 0.000001);
+            b.advance();
+        }
+        assertEquals(src.length, b.getReadByteCount());
+        try {
+            b.readByte();
+            fail();
+        } catch(EOFException eof) {
+        }
+    }
+
+    @Test
+    public void testReadAndRefer() throws IOException {
+        byte[] src = new byte[100];
+        for(int i=0; i < src.length; i++) {
+            src[i] = (byte)i;
+        }
+        BufferedStreamInput b = new BufferedStreamInput(trickle(src), 16);
+
+        assertEquals((byte)0, b.readByte());
+
+        final byte[] referred = new byte[10];
+        assertEquals(true, b.tryRefer(new BufferReferer() {
+            public void refer(ByteBuffer bb, boolean gift) {
+                bb.get(referred);
+            }
+        }, 10));
+        assertEquals((byte)1, referred[0]);
+        assertEquals((byte)10, referred[9]);
+
+        assertEquals(false, b.tryRefer(null, 17));
+
+        byte[] large = new byte[40];
+        assertEquals(40, b.read(large, 0, large.length));
+        assertEquals((byte)11, large[0]);
+        assertEquals((byte)50, large[39]);
+
+        byte[] small = new byte[12];
+        assertEquals(12, b.read(small, 0, small.length));
+        assertEquals((byte)51, small[0]);
+        assertEquals((byte)62, small[11]);
+        assertEquals(63, b.getReadByteCount());
+    }
+
+    @Test
+    public void testUnpacker() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker pk = msgpack.createBufferPacker();
+        byte[] blob = new byte[1000];
+        blob[999] = (byte)1;
+        for(int i=0; i < 100; i++) {
+            pk.write(i);
+            pk.write("string" + i);
+            pk.write(blob);
+            pk.write((double)i);
+        }
+        byte[] raw = pk.toByteArray();
+
+        Unpacker u = msgpack.createUnpacker(trickle(raw), 64);
+        for(int i=0; i < 100; i++) {
+            assertEquals(i, u.readInt());
+            assertEquals("string" + i, u.readString());
+            assertArrayEquals(blob, u.readByteArray());
+            assertEquals((double)i, u.readDouble(), 0.0);
+        }
+        assertEquals(raw.length, u.getReadByteCount());
+    }
+
+    @Test
+    public void testOneShotReadDoesNotReadAhead() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker pk = msgpack.createBufferPacker();
+        pk.write("first");
+        pk.write("second");
+        ByteArrayInputStream in = new ByteArrayInputStream(pk.toByteArray());
+        assertEquals("first", msgpack.read(in, String.class));
+        assertEquals("second", msgpack.read(in, String.class));
+    }
+
+    private static InputStream trickle(byte[] src) {
+        // returns at most 3 bytes per read call
+        return new FilterInputStream(new ByteArrayInputStream(src)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+}
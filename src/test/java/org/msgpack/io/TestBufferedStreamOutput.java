@@ -0,0 +1,99 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.Packer;
+
+
+public class TestBufferedStreamOutput {
+    @Test
+    public void testBatchesTopLevelValues() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            list.add("string" + i);
+        }
+        BufferPacker expected = msgpack.createBufferPacker();
+        expected.write(list);
+        expected.write(1);
+
+        CountingStream out = new CountingStream();
+        Packer packer = msgpack.createPacker(out);
+        packer.write(list);
+        assertEquals(1, out.writes);
+        packer.write(1);
+        assertEquals(2, out.writes);
+        assertEquals(0, out.flushes);
+        packer.flush();
+        assertEquals(1, out.flushes);
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testLargeRawBypassesBuffer() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        byte[] blob = new byte[1000];
+        blob[999] = (byte) 1;
+        BufferPacker expected = msgpack.createBufferPacker();
+        expected.writeArrayBegin(2);
+        expected.write(blob);
+        expected.write(blob);
+        expected.writeArrayEnd();
+
+        CountingStream out = new CountingStream();
+        Packer packer = msgpack.createPacker(out, 64);
+        packer.writeArrayBegin(2);
+        packer.write(blob);
+        packer.write(blob);
+        packer.writeArrayEnd();
+        assertEquals(4, out.writes);
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testUnbufferedAndOneShotWrite() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        CountingStream out = new CountingStream();
+        Packer packer = msgpack.createPacker(out, 0);
+        packer.writeArrayBegin(1);
+        packer.write(1);
+        assertEquals(2, out.writes);
+        packer.writeArrayEnd();
+
+        out = new CountingStream();
+        msgpack.write(out, "value");
+        assertEquals(1, out.flushes);
+        assertEquals("value", msgpack.read(out.toByteArray(), String.class));
+    }
+
+    private static class CountingStream extends ByteArrayOutputStream {
+        int writes;
+        int flushes;
+
+        @Override
+        public synchronized void write(int b) {
+            writes++;
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
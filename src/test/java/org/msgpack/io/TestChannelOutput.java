@@ -0,0 +1,217 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.unpacker.Unpacker;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.MessagePackPacker;
+import org.msgpack.packer.Packer;
+
+
+public class TestChannelOutput {
+    private static void writeMessage(Packer packer, byte[] blob, ByteBuffer direct)
+            throws IOException {
+        packer.writeArrayBegin(5);
+        packer.write("header");
+        packer.write(1);
+        packer.write(blob);
+        packer.write(direct.duplicate());
+        packer.write(2.0);
+        packer.writeArrayEnd();
+    }
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        byte[] blob = new byte[20000];
+        blob[19999] = (byte) 1;
+        ByteBuffer direct = ByteBuffer.allocateDirect(1000);
+        direct.put(0, (byte) 2);
+
+        BufferPacker expected = msgpack.createBufferPacker();
+        writeMessage(expected, blob, direct);
+        expected.write("next");
+
+        RecordingChannel channel = new RecordingChannel();
+        Packer packer = msgpack.createPacker(channel);
+        writeMessage(packer, blob, direct);
+        assertEquals(1, channel.gatheringWrites);
+        assertTrue(channel.directWritten);
+        packer.write("next");
+        assertEquals(2, channel.gatheringWrites);
+        assertArrayEquals(expected.toByteArray(), channel.out.toByteArray());
+    }
+
+    @Test
+    public void testBulkArraysWithSmallBuffer() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        int[] first = new int[2000];
+        long[] second = new long[2000];
+        double[] third = new double[600];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = 1000 + i;
+            second[i] = 2000 + i;
+        }
+        for (int i = 0; i < third.length; i++) {
+            third[i] = i * 0.5;
+        }
+        for (int bufferSize : new int[] { 16, 4096, 8192 }) {
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            Packer packer = new MessagePackPacker(msgpack, Channels.newChannel(bo), bufferSize);
+            for (int n = 0; n < 2; n++) {
+                packer.writeArrayBegin(3);
+                packer.write(first);
+                packer.write(second);
+                packer.write(third);
+                packer.writeArrayEnd();
+            }
+            packer.flush();
+
+            Unpacker u = msgpack.createBufferUnpacker(bo.toByteArray());
+            for (int n = 0; n < 2; n++) {
+                assertEquals(3, u.readArrayBegin());
+                assertArrayEquals(first, u.read(int[].class));
+                assertArrayEquals(second, u.read(long[].class));
+                assertArrayEquals(third, u.read(double[].class), 0.0);
+                u.readArrayEnd();
+            }
+        }
+    }
+
+    @Test
+    public void testPlainChannel() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        byte[] blob = new byte[20000];
+        ByteBuffer direct = ByteBuffer.allocateDirect(1000);
+        BufferPacker expected = msgpack.createBufferPacker();
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        Packer packer = msgpack.createPacker(Channels.newChannel(bo));
+        for (int i = 0; i < 100; i++) {
+            blob[i] = (byte) i;
+            writeMessage(expected, blob, direct);
+            writeMessage(packer, blob, direct);
+        }
+        packer.flush();
+        assertArrayEquals(expected.toByteArray(), bo.toByteArray());
+
+        // ByteBuffer with a position through a StreamOutput
+        ByteBuffer bb = ByteBuffer.wrap(new byte[] { 0, 1, 2 });
+        bb.position(1);
+        bo.reset();
+        msgpack.createPacker(bo, 0).write(bb);
+        assertArrayEquals(new byte[] { (byte) 0xa2, 1, 2 }, bo.toByteArray());
+    }
+
+    @Test
+    public void testTransferFromFile() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        byte[] b = new byte[50000];
+        b[100] = (byte) 1;
+        File f = File.createTempFile("msgpack", ".raw");
+        f.deleteOnExit();
+        FileOutputStream fo = new FileOutputStream(f);
+        fo.write(b);
+        fo.close();
+
+        BufferPacker expected = msgpack.createBufferPacker();
+
+        RandomAccessFile file = new RandomAccessFile(f, "r");
+        RecordingChannel channel = new RecordingChannel();
+        channel.limit = 4096;
+        Packer packer = msgpack.createPacker(channel);
+        // returns early from the gathering write of the referenced array
+        writeMessage(packer, new byte[20000], ByteBuffer.allocateDirect(1000));
+        writeMessage(expected, new byte[20000], ByteBuffer.allocateDirect(1000));
+        assertTrue(channel.gatheringWrites > 1);
+        packer.write(1);
+        packer.writeRaw(file.getChannel(), b.length);
+        assertEquals(b.length, file.getChannel().position());
+        packer.write(2);
+        file.close();
+        expected.write(1);
+        expected.write(b);
+        expected.write(2);
+        assertArrayEquals(expected.toByteArray(), channel.out.toByteArray());
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int gatheringWrites;
+        boolean directWritten;
+        // bytes after which a gathering write returns early
+        int limit = Integer.MAX_VALUE;
+
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            if (src.isDirect()) {
+                directWritten = true;
+            }
+            while (src.hasRemaining()) {
+                out.write(src.get());
+            }
+            return n;
+        }
+
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatheringWrites++;
+            long n = 0;
+            for (int i = offset; i < offset + length && n < limit; i++) {
+                n += write(srcs[i]);
+            }
+            return n;
+        }
+
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testNonBlockingChannelIsRejected() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            try {
+                msgpack.createPacker(pipe.sink());
+                fail();
+            } catch (IllegalBlockingModeException e) {
+            }
+
+            pipe.sink().configureBlocking(true);
+            Packer packer = msgpack.createPacker(pipe.sink());
+            packer.write(1);
+            packer.flush();
+            ByteBuffer read = ByteBuffer.allocate(1);
+            assertEquals(1, pipe.source().read(read));
+            assertEquals((byte) 1, read.get(0));
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestChunkPool {
+    private static class CountingPool extends ThreadLocalChunkPool {
+        final List<Integer> allocated = new ArrayList<Integer>();
+        int released;
+
+        @Override
+        public byte[] allocate(int size) {
+            byte[] b = super.allocate(size);
+            allocated.add(b.length);
+            return b;
+        }
+
+        @Override
+        public void release(byte[] chunk) {
+            released++;
+            super.release(chunk);
+        }
+    }
+
+    @Test
+    public void testThreadLocalChunkPool() {
+        ThreadLocalChunkPool pool = new ThreadLocalChunkPool(1);
+        byte[] a = pool.allocate(100);
+        assertEquals(128, a.length);
+        pool.release(a);
+        assertSame(a, pool.allocate(65));
+        assertNotSame(a, pool.allocate(65));
+
+        byte[] large = pool.allocate(100000);
+        assertEquals(100000, large.length);
+        pool.release(large);
+        assertNotSame(large, pool.allocate(100000));
+    }
+
+    @Test
+    public void testLinkedBufferInput() throws IOException {
+        CountingPool pool = new CountingPool();
+        LinkedBufferInput b = new LinkedBufferInput(64, pool);
+        byte[] src = new byte[80];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = (byte) i;
+        }
+        b.feed(src, 0, 40);
+        b.feed(src, 40, 40);
+        final boolean[] gift = new boolean[1];
+        assertTrue(b.tryRefer(new BufferReferer() {
+            public void refer(ByteBuffer bb, boolean g) {
+                gift[0] = g;
+            }
+        }, 64));
+        // pooled chunks are not handed out by reference
+        assertFalse(gift[0]);
+        // the consumed chunk is back in the pool
+        assertEquals(1, pool.released);
+        byte[] dst = new byte[16];
+        assertEquals(16, b.read(dst, 0, 16));
+        assertEquals((byte) 79, dst[15]);
+        b.clear();
+        assertEquals(pool.allocated.size() - 1, pool.released);
+    }
+
+    @Test
+    public void testUnpacker() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        msgpack.setChunkPool(new ThreadLocalChunkPool());
+        BufferPacker pk = msgpack.createBufferPacker();
+        for (int i = 0; i < 100; i++) {
+            pk.write("value" + i);
+            pk.write(new byte[] { (byte) i });
+        }
+        byte[] bytes = pk.toByteArray();
+
+        BufferUnpacker u = msgpack.createBufferUnpacker();
+        List<ByteBuffer> raws = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < bytes.length; i += 10) {
+            u.feed(bytes, i, Math.min(10, bytes.length - i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value" + i, u.readString());
+            raws.add(u.readByteBuffer());
+            // chunks released by now are reused by this feed
+            u.feed(new byte[0]);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals((byte) i, raws.get(i).get(0));
+        }
+    }
+}
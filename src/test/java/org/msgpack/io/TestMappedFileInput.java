@@ -0,0 +1,128 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.Unpacker;
+import org.msgpack.unpacker.UnpackerIterator;
+
+
+public class TestMappedFileInput {
+    private static File write(byte[] bytes) throws IOException {
+        File f = File.createTempFile("msgpack", ".mpac");
+        f.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(f);
+        out.write(bytes);
+        out.close();
+        return f;
+    }
+
+    private static byte[] pack(MessagePack msgpack) throws IOException {
+        BufferPacker pk = msgpack.createBufferPacker();
+        byte[] blob = new byte[100];
+        blob[99] = (byte) 1;
+        for (int i = 0; i < 100; i++) {
+            pk.write(i * 100000L);
+            pk.write("string" + i);
+            pk.write(blob);
+            pk.write((double) i);
+        }
+        return pk.toByteArray();
+    }
+
+    @Test
+    public void testSegmentBoundaries() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        byte[] bytes = pack(msgpack);
+        File f = write(bytes);
+
+        // segments smaller than some raws
+        RandomAccessFile file = new RandomAccessFile(f, "r");
+        MappedFileInput in = new MappedFileInput(file.getChannel(), 37);
+        Unpacker u = new TestUnpacker(msgpack, in);
+        byte[] blob = new byte[100];
+        blob[99] = (byte) 1;
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 100000L, u.readLong());
+            assertEquals("string" + i, u.readString());
+            assertArrayEquals(blob, u.readByteArray());
+            assertEquals((double) i, u.readDouble(), 0.0);
+        }
+        assertEquals(bytes.length, u.getReadByteCount());
+        u.close();
+        assertFalse(file.getChannel().isOpen());
+    }
+
+    @Test
+    public void testReferSlices() throws IOException {
+        byte[] src = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        RandomAccessFile file = new RandomAccessFile(write(src), "r");
+        MappedFileInput in = new MappedFileInput(file.getChannel(), 8);
+        in.skip(3);
+        final ByteBuffer[] referred = new ByteBuffer[1];
+        assertTrue(in.tryRefer(new BufferReferer() {
+            public void refer(ByteBuffer bb, boolean gift) {
+                assertTrue(gift);
+                referred[0] = bb.slice();
+            }
+        }, 6));
+        assertEquals(6, referred[0].remaining());
+        assertEquals((byte) 4, referred[0].get(0));
+        assertFalse(in.tryRefer(null, 9));
+        assertEquals((byte) 10, in.readByte());
+        in.close();
+    }
+
+    @Test
+    public void testCreateUnpacker() throws IOException {
+        MessagePack msgpack = new MessagePack();
+        File f = write(pack(msgpack));
+        Unpacker u = msgpack.createUnpacker(f);
+        int n = 0;
+        UnpackerIterator it = u.iterator();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        assertEquals(400, n);
+        u.close();
+    }
+
+    private static class TestUnpacker extends org.msgpack.unpacker.MessagePackUnpacker {
+        TestUnpacker(MessagePack msgpack, Input in) {
+            super(msgpack, in);
+        }
+    }
+
+    @Test
+    public void testCreateUnpackerClosesFileOnFailure() throws IOException {
+        final FileChannel[] opened = new FileChannel[1];
+        MessagePack msgpack = new MessagePack() {
+            @Override
+            public Unpacker createUnpacker(FileChannel channel) throws IOException {
+                opened[0] = channel;
+                throw new IOException("cannot map");
+            }
+        };
+        File f = write(new byte[] { 1 });
+        try {
+            msgpack.createUnpacker(f);
+            fail();
+        } catch (IOException e) {
+        }
+        assertFalse(opened[0].isOpen());
+    }
+}
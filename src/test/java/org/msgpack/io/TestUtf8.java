@@ -0,0 +1,105 @@
+package org.msgpack.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestUtf8 {
+    private static final char[] CHARS = { 'a', 'Z', '\u007f', '\u0080',
+            '\u00e9', '\u07ff', '\u0800', '\u3042', '\uffff', '\ud83d',
+            '\ude00' };
+
+    private static String randomString(Random rand, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(CHARS[rand.nextInt(CHARS.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testMatchesGetBytes() throws Exception {
+        Random rand = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            String s = randomString(rand, rand.nextInt(40));
+            byte[] expected = s.getBytes("UTF-8");
+            assertEquals(s, expected.length, Utf8.length(s));
+            byte[] b = new byte[expected.length + 2];
+            assertEquals(expected.length + 1, Utf8.encode(s, b, 1));
+            byte[] actual = new byte[expected.length];
+            System.arraycopy(b, 1, actual, 0, actual.length);
+            assertArrayEquals(s, expected, actual);
+        }
+    }
+
+    @Test
+    public void testOutputs() throws Exception {
+        String s = randomString(new Random(1), 300);
+        byte[] utf8 = s.getBytes("UTF-8");
+        byte[] expected = new byte[utf8.length + 1];
+        expected[0] = (byte) 1;
+        System.arraycopy(utf8, 0, expected, 1, utf8.length);
+
+        ArrayBufferOutput array = new ArrayBufferOutput(16);
+        array.writeByte((byte) 1);
+        array.writeUTF8(s, utf8.length);
+        assertArrayEquals(expected, array.toByteArray());
+
+        for (int bufferSize : new int[] { 16, 4096 }) {
+            LinkedBufferOutput linked = new LinkedBufferOutput(bufferSize);
+            linked.writeByte((byte) 1);
+            linked.writeUTF8(s, utf8.length);
+            assertArrayEquals(expected, linked.toByteArray());
+        }
+
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        StreamOutput stream = new StreamOutput(bo);
+        stream.writeByte((byte) 1);
+        stream.writeUTF8(s, utf8.length);
+        assertArrayEquals(expected, bo.toByteArray());
+
+        for (ByteBuffer bb : new ByteBuffer[] {
+                ByteBuffer.allocate(expected.length + 3),
+                ByteBuffer.allocateDirect(expected.length + 3) }) {
+            bb.position(2);
+            ByteBufferOutput out = new ByteBufferOutput(bb.slice());
+            out.writeByte((byte) 1);
+            out.writeUTF8(s, utf8.length);
+            out.writeByte((byte) 2);
+            ByteBuffer written = bb.slice();
+            byte[] actual = new byte[expected.length];
+            written.get(actual);
+            assertArrayEquals(expected, actual);
+            assertEquals((byte) 2, written.get());
+        }
+    }
+
+    @Test
+    public void testWriteCharSequence() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        StringBuilder sb = new StringBuilder();
+        BufferPacker packer = msgpack.createBufferPacker();
+        for (int i = 0; i < 100; i++) {
+            sb.append("\u3042").append(i);
+            packer.write(sb);
+        }
+        packer.write((CharSequence) null);
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(packer.toByteArray());
+        sb.setLength(0);
+        for (int i = 0; i < 100; i++) {
+            sb.append("\u3042").append(i);
+            assertEquals(sb.toString(), unpacker.readString());
+        }
+        unpacker.readNil();
+    }
+}
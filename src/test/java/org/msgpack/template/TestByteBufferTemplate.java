@@ -23,7 +23,7 @@ public class TestByteBufferTemplate {
 	    return null;
 	}
 	byte[] bytes = new byte[from.remaining()];
-	from.get(bytes, from.arrayOffset() + from.position(), from.remaining());
+	from.duplicate().get(bytes);
 	return bytes;
     }
 
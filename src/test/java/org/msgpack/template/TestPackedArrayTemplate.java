@@ -0,0 +1,189 @@
+package org.msgpack.template;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.MessageTypeException;
+import org.msgpack.annotation.Message;
+import org.msgpack.annotation.Packed;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.template.builder.JavassistTemplateBuilder;
+import org.msgpack.template.builder.ReflectionTemplateBuilder;
+import org.msgpack.template.builder.TemplateBuildException;
+import org.msgpack.type.ValueType;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestPackedArrayTemplate {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	Random rand = new Random(0);
+	for (int n : new int[] { 0, 1, 7, 8, 9, 1000 }) {
+	    boolean[] z = new boolean[n];
+	    int[] i = new int[n];
+	    long[] l = new long[n];
+	    float[] f = new float[n];
+	    double[] d = new double[n];
+	    for (int k = 0; k < n; k++) {
+		z[k] = rand.nextBoolean();
+		i[k] = rand.nextInt();
+		l[k] = rand.nextLong();
+		f[k] = rand.nextFloat();
+		d[k] = rand.nextDouble();
+	    }
+	    BufferPacker packer = msgpack.createBufferPacker();
+	    Templates.TPackedBooleanArray.write(packer, z);
+	    Templates.TPackedIntegerArray.write(packer, i);
+	    Templates.TPackedLongArray.write(packer, l);
+	    Templates.TPackedFloatArray.write(packer, f);
+	    Templates.TPackedDoubleArray.write(packer, d);
+	    byte[] bytes = packer.toByteArray();
+
+	    BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+	    assertEquals(ValueType.RAW, unpacker.getNextType());
+	    assertTrue(Arrays.equals(z, Templates.TPackedBooleanArray.read(unpacker, null)));
+	    assertArrayEquals(i, Templates.TPackedIntegerArray.read(unpacker, null));
+	    assertArrayEquals(l, Templates.TPackedLongArray.read(unpacker, null));
+	    assertArrayEquals(f, Templates.TPackedFloatArray.read(unpacker, null), 0f);
+	    assertArrayEquals(d, Templates.TPackedDoubleArray.read(unpacker, null), 0.0);
+	    assertEquals(bytes.length, unpacker.getReadByteCount());
+	}
+    }
+
+    @Test
+    public void testLayout() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	BufferPacker packer = msgpack.createBufferPacker();
+	Templates.TPackedIntegerArray.write(packer, new int[] { 1, -1 });
+	assertArrayEquals(new byte[] { (byte) 0xa8, 0, 0, 0, 1, -1, -1, -1, -1 }, packer.toByteArray());
+
+	packer = msgpack.createBufferPacker();
+	Templates.TPackedBooleanArray.write(packer, new boolean[] { true, false, true, true,
+		false, false, false, false, true, true });
+	assertArrayEquals(new byte[] { (byte) 0xa3, 6, (byte) 0xb0, (byte) 0xc0 }, packer.toByteArray());
+    }
+
+    @Test
+    public void testReadsRegularArrays() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	byte[] bytes = msgpack.write(new double[] { 1.5, 2.5 });
+	BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+	assertArrayEquals(new double[] { 1.5, 2.5 }, Templates.TPackedDoubleArray.read(unpacker, null), 0.0);
+
+	bytes = msgpack.write(new boolean[] { true, false });
+	unpacker = msgpack.createBufferUnpacker(bytes);
+	assertTrue(Arrays.equals(new boolean[] { true, false }, Templates.TPackedBooleanArray.read(unpacker, null)));
+    }
+
+    @Test
+    public void testInvalidLength() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	byte[] bytes = msgpack.write(new byte[] { 1, 2, 3 });
+	try {
+	    Templates.TPackedLongArray.read(msgpack.createBufferUnpacker(bytes), null);
+	    fail();
+	} catch (MessageTypeException e) {
+	}
+	bytes = msgpack.write(new byte[] { 8, 0 });
+	try {
+	    Templates.TPackedBooleanArray.read(msgpack.createBufferUnpacker(bytes), null);
+	    fail();
+	} catch (MessageTypeException e) {
+	}
+    }
+
+    @Test
+    public void testRegisteredTemplate() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	msgpack.register(long[].class, Templates.TPackedLongArray);
+	long[] v = new long[] { 1L, Long.MIN_VALUE, Long.MAX_VALUE };
+	byte[] bytes = msgpack.write(v);
+	assertEquals(1 + 24, bytes.length);
+	assertArrayEquals(v, msgpack.read(bytes, long[].class));
+    }
+
+    @Test
+    public void testReflectionField() throws Exception {
+	TemplateRegistry registry = new TemplateRegistry(null);
+	Template<PackedFields> tmpl = new ReflectionTemplateBuilder(registry).buildTemplate(PackedFields.class);
+	testField(tmpl);
+    }
+
+    @Test
+    public void testJavassistField() throws Exception {
+	TemplateRegistry registry = new TemplateRegistry(null);
+	Template<PackedFields> tmpl = new JavassistTemplateBuilder(registry).buildTemplate(PackedFields.class);
+	testField(tmpl);
+    }
+
+    @Test
+    public void testUnsupportedField() throws Exception {
+	TemplateRegistry registry = new TemplateRegistry(null);
+	try {
+	    new ReflectionTemplateBuilder(registry).buildTemplate(UnsupportedPackedField.class);
+	    fail();
+	} catch (TemplateBuildException e) {
+	}
+    }
+
+    private void testField(Template<PackedFields> tmpl) throws Exception {
+	MessagePack msgpack = new MessagePack();
+	PackedFields v = new PackedFields();
+	v.bits = new boolean[] { true, false, true };
+	v.features = new double[] { 0.25, -1.0 };
+	v.plain = new int[] { 1, 2 };
+	BufferPacker packer = msgpack.createBufferPacker();
+	tmpl.write(packer, v);
+	byte[] bytes = packer.toByteArray();
+
+	BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+	unpacker.readArrayBegin();
+	assertEquals(ValueType.RAW, unpacker.getNextType());
+	unpacker.skip();
+	assertEquals(ValueType.RAW, unpacker.getNextType());
+	unpacker.skip();
+	assertEquals(ValueType.ARRAY, unpacker.getNextType());
+
+	PackedFields ret = tmpl.read(msgpack.createBufferUnpacker(bytes), null);
+	assertTrue(Arrays.equals(v.bits, ret.bits));
+	assertArrayEquals(v.features, ret.features, 0.0);
+	assertArrayEquals(v.plain, ret.plain);
+	assertNull(ret.missing);
+    }
+
+    @Message
+    public static class PackedFields {
+	@Packed
+	public boolean[] bits;
+
+	@Packed
+	public double[] features;
+
+	public int[] plain;
+
+	@Packed
+	public long[] missing;
+
+	public PackedFields() {
+	}
+    }
+
+    @Message
+    public static class UnsupportedPackedField {
+	@Packed
+	public short[] values;
+
+	public UnsupportedPackedField() {
+	}
+    }
+}
@@ -0,0 +1,101 @@
+package org.msgpack.template;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.MessageTypeException;
+import org.msgpack.TestSet;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.Packer;
+import org.msgpack.packer.PreEncodedString;
+import org.msgpack.unpacker.BufferUnpacker;
+import org.msgpack.util.json.JSON;
+
+
+public class TestPreEncodedStringTemplate {
+
+    @Test
+    public void testSameBytesAsString() throws Exception {
+	new TestSameBytes().testString();
+    }
+
+    @Test
+    public void testMapKeys() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+	Map<PreEncodedString, Integer> preEncoded = new LinkedHashMap<PreEncodedString, Integer>();
+	for (int i = 0; i < 40; i++) {
+	    map.put("key" + i, i);
+	    preEncoded.put(new PreEncodedString("key" + i), i);
+	}
+	byte[] bytes = msgpack.write(preEncoded);
+	assertArrayEquals(msgpack.write(map), bytes);
+
+	Template<Map<PreEncodedString, Integer>> tmpl =
+		new MapTemplate<PreEncodedString, Integer>(Templates.TPreEncodedString, Templates.TInteger);
+	BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+	assertEquals(preEncoded, tmpl.read(unpacker, new HashMap<PreEncodedString, Integer>()));
+    }
+
+    @Test
+    public void testReadFromWrappedBytes() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	String v = "\u3042\u3044 key";
+	byte[] bytes = msgpack.write(v);
+	PreEncodedString s = Templates.TPreEncodedString.read(
+		msgpack.createBufferUnpacker(bytes), null);
+	assertEquals(v, s.toString());
+	assertEquals(new PreEncodedString(v), s);
+
+	// the instance does not refer to the wrapped array
+	byte[] copy = bytes.clone();
+	bytes[1] = (byte) 'x';
+	BufferPacker packer = msgpack.createBufferPacker();
+	packer.write(s);
+	assertArrayEquals(copy, packer.toByteArray());
+    }
+
+    @Test
+    public void testReadMalformed() throws Exception {
+	MessagePack msgpack = new MessagePack();
+	byte[] bytes = new byte[] { (byte) 0xa2, (byte) 0xc3, (byte) 0x28 };
+	try {
+	    Templates.TPreEncodedString.read(msgpack.createBufferUnpacker(bytes), null);
+	    fail();
+	} catch (MessageTypeException e) {
+	}
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+	JSON json = new JSON();
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	Packer packer = json.createPacker(out);
+	packer.write(new PreEncodedString("abc"));
+	assertEquals("\"abc\"", new String(out.toByteArray(), "UTF-8"));
+    }
+
+    private static class TestSameBytes extends TestSet {
+	@Override
+	public void testString(String v) throws Exception {
+	    MessagePack msgpack = new MessagePack();
+	    BufferPacker expected = msgpack.createBufferPacker();
+	    expected.write(v);
+	    PreEncodedString s = v == null ? null : new PreEncodedString(v);
+	    BufferPacker packer = msgpack.createBufferPacker();
+	    Templates.TPreEncodedString.write(packer, s);
+	    assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+
+	    BufferUnpacker unpacker = msgpack.createBufferUnpacker(packer.toByteArray());
+	    assertEquals(s, Templates.TPreEncodedString.read(unpacker, null));
+	}
+    }
+}
@@ -0,0 +1,105 @@
+package org.msgpack.template;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+
+
+public class TestTemplateLookupCache {
+    private static final Class<?>[] TYPES = { String.class, Integer.class,
+            Long.class, Double.class, Boolean.class, BigInteger.class, Date.class };
+
+    @Test
+    public void testSameAsRegistry() throws Exception {
+        TemplateRegistry registry = new TemplateRegistry(null);
+        TemplateLookupCache cache = new TemplateLookupCache(registry);
+        // more classes than the cache holds
+        for (int i = 0; i < 3; i++) {
+            for (Class<?> type : TYPES) {
+                assertSame(registry.lookup(type), cache.lookup(type));
+            }
+        }
+    }
+
+    @Test
+    public void testRegisterInvalidates() throws Exception {
+        TemplateRegistry parent = new TemplateRegistry(null);
+        TemplateRegistry registry = new TemplateRegistry(parent);
+        TemplateLookupCache cache = new TemplateLookupCache(registry);
+        assertSame(Templates.TString, cache.lookup(String.class));
+
+        Template<String> custom = Templates.tNotNullable(Templates.TString);
+        registry.register(String.class, custom);
+        assertSame(custom, cache.lookup(String.class));
+
+        registry.unregister(String.class);
+        assertSame(Templates.TString, cache.lookup(String.class));
+
+        parent.register(String.class, custom);
+        assertSame(custom, cache.lookup(String.class));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final TemplateRegistry registry = new TemplateRegistry(null);
+        final TemplateLookupCache cache = new TemplateLookupCache(registry);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 10000; i++) {
+                            Class<?> type = TYPES[(i + offset) % 3];
+                            if (cache.lookup(type) != registry.lookup(type)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> f : results) {
+                assertSame(Boolean.TRUE, f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testHeterogeneousList() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            list.add(i % 2 == 0 ? (Object) ("s" + i) : (Object) i);
+        }
+        BufferPacker expected = msgpack.createBufferPacker();
+        expected.writeArrayBegin(list.size());
+        for (Object o : list) {
+            if (o instanceof String) {
+                expected.write((String) o);
+            } else {
+                expected.write(((Integer) o).intValue());
+            }
+        }
+        expected.writeArrayEnd();
+
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write((Object) list);
+        assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+    }
+}
@@ -4,10 +4,21 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.MessageTypeException;
+import org.msgpack.annotation.Message;
 
 public class TestTemplateRegistry {
 
@@ -35,4 +46,188 @@ public class TestTemplateRegistry {
         assertThat(template, is(instanceOf(ListTemplate.class)));
     }
 
+    @Message
+    public static class Node {
+        public int value;
+        public Node next;
+    }
+
+    @Test
+    public void testConcurrentBuildOfRecursiveType() throws Exception {
+        final TemplateRegistry registry = new TemplateRegistry(null);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Template<?>>> results = new ArrayList<Future<Template<?>>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Template<?>>() {
+                    public Template<?> call() throws Exception {
+                        start.await();
+                        return registry.lookup(Node.class);
+                    }
+                }));
+            }
+            start.countDown();
+            Template<?> first = results.get(0).get();
+            assertThat(first, is(not(instanceOf(TemplateReference.class))));
+            for (Future<Template<?>> f : results) {
+                assertSame(first, f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        @SuppressWarnings("unchecked")
+        Template<Node> tmpl = (Template<Node>) registry.lookup(Node.class);
+        Node list = new Node();
+        list.value = 1;
+        list.next = new Node();
+        list.next.value = 2;
+        MessagePack msgpack = new MessagePack();
+        byte[] bytes = msgpack.write(list, tmpl);
+        Node ret = msgpack.read(bytes, tmpl);
+        assertEquals(1, ret.value);
+        assertEquals(2, ret.next.value);
+        assertNull(ret.next.next);
+    }
+
+    public List<Map<String, Integer>> mapList;
+
+    public List<? extends Number> wildcardList;
+
+    public <T> List<T> typeVariableList() {
+        return null;
+    }
+
+    private static Type fieldType(String name) throws Exception {
+        return TestTemplateRegistry.class.getField(name).getGenericType();
+    }
+
+    private static ParameterizedType parameterized(final Class<?> raw, final Type... args) {
+        // an implementation other than the JDK's, without equals()
+        return new ParameterizedType() {
+            public Type[] getActualTypeArguments() {
+                return args;
+            }
+
+            public Type getRawType() {
+                return raw;
+            }
+
+            public Type getOwnerType() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testGenericTemplateIsCached() throws Exception {
+        TemplateRegistry registry = new TemplateRegistry(null);
+        Template<?> first = registry.lookup(fieldType("mapList"));
+        assertSame(first, registry.lookup(fieldType("mapList")));
+        assertSame(first, registry.lookup(parameterized(List.class,
+                parameterized(Map.class, String.class, Integer.class))));
+        assertNotSame(first, registry.lookup(parameterized(List.class,
+                parameterized(Map.class, String.class, Long.class))));
+
+        Type typeVariableList = TestTemplateRegistry.class
+                .getMethod("typeVariableList").getGenericReturnType();
+        assertSame(registry.lookup(fieldType("wildcardList")), registry.lookup(typeVariableList));
+    }
+
+    @Test
+    public void testGenericTemplateIsRebuiltAfterRegister() throws Exception {
+        TemplateRegistry registry = new TemplateRegistry(null);
+        Template<?> before = registry.lookup(fieldType("mapList"));
+        registry.register(Integer.class, Templates.tNotNullable(Templates.TInteger));
+        Template<?> after = registry.lookup(fieldType("mapList"));
+        assertNotSame(before, after);
+        assertSame(after, registry.lookup(fieldType("mapList")));
+    }
+
+    static class Unregistered {
+    }
+
+    static class Base {
+    }
+
+    static class Derived extends Base {
+    }
+
+    @Test
+    public void testNotFoundIsInvalidatedByParentRegister() throws Exception {
+        TemplateRegistry parent = new TemplateRegistry(null);
+        TemplateRegistry child = new TemplateRegistry(parent);
+        for (int i = 0; i < 2; i++) {
+            try {
+                child.lookup(Unregistered.class);
+                fail();
+            } catch (MessageTypeException e) {
+            }
+        }
+        Template<String> tmpl = Templates.TString;
+        parent.register(Unregistered.class, tmpl);
+        assertSame(tmpl, child.lookup(Unregistered.class));
+        parent.unregister(Unregistered.class);
+        try {
+            child.lookup(Unregistered.class);
+            fail();
+        } catch (MessageTypeException e) {
+        }
+    }
+
+    @Test
+    public void testInheritedTemplateIsInvalidatedByRegister() throws Exception {
+        TemplateRegistry parent = new TemplateRegistry(null);
+        TemplateRegistry child = new TemplateRegistry(parent);
+        parent.register(Base.class, Templates.TString);
+        assertSame(Templates.TString, child.lookup(Derived.class));
+
+        child.register(Base.class, Templates.TInteger);
+        assertSame(Templates.TInteger, child.lookup(Derived.class));
+        assertSame(Templates.TString, parent.lookup(Derived.class));
+
+        child.unregister(Base.class);
+        parent.register(Base.class, Templates.TLong);
+        assertSame(Templates.TLong, child.lookup(Derived.class));
+    }
+
+    @Message
+    public static class BuiltLater {
+        public int value;
+    }
+
+    public static class BuiltLaterSubclass extends BuiltLater {
+    }
+
+    public interface CachedLater {
+    }
+
+    public static class CachedLaterImpl implements CachedLater {
+    }
+
+    @Test
+    public void testNotFoundIsInvalidatedByBuild() throws Exception {
+        TemplateRegistry registry = new TemplateRegistry(null);
+        try {
+            registry.lookup(BuiltLaterSubclass.class);
+            fail();
+        } catch (MessageTypeException e) {
+        }
+        Template tmpl = registry.lookup(BuiltLater.class);
+        assertSame(tmpl, registry.lookup(BuiltLaterSubclass.class));
+    }
+
+    @Test
+    public void testNotFoundIsInvalidatedByInterfaceLookup() throws Exception {
+        TemplateRegistry parent = new TemplateRegistry(null);
+        TemplateRegistry child = new TemplateRegistry(parent);
+        try {
+            child.lookup(CachedLaterImpl.class);
+            fail();
+        } catch (MessageTypeException e) {
+        }
+        Template tmpl = parent.lookup(CachedLater.class);
+        assertSame(tmpl, child.lookup(CachedLaterImpl.class));
+    }
 }
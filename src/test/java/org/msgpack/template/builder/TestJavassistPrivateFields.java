@@ -0,0 +1,146 @@
+package org.msgpack.template.builder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.annotation.Message;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.template.Template;
+import org.msgpack.template.TemplateRegistry;
+import org.msgpack.unpacker.BufferUnpacker;
+
+
+public class TestJavassistPrivateFields {
+    @Message
+    public static class PrivateFields {
+        private boolean z;
+        private byte b;
+        private short s;
+        private int i;
+        private long l;
+        private float f;
+        private double d;
+        private char c;
+        private String str;
+        private long[] longs;
+        private double[] doubles;
+        private List<Integer> list;
+        public int visible;
+
+        public PrivateFields() {
+        }
+
+        PrivateFields(int seed) {
+            z = true;
+            b = (byte) seed;
+            s = (short) (seed * 3);
+            i = seed * 1000;
+            l = Long.MAX_VALUE - seed;
+            f = seed / 3.0f;
+            d = seed / 7.0;
+            c = (char) ('A' + seed);
+            str = "v" + seed;
+            longs = new long[] { seed, -seed };
+            doubles = new double[] { seed * 0.5 };
+            list = new ArrayList<Integer>();
+            list.add(seed);
+            visible = -seed;
+        }
+    }
+
+    @Message
+    public static class PrivateSubclass extends PrivateFields {
+        private int extra;
+
+        public PrivateSubclass() {
+        }
+
+        PrivateSubclass(int seed) {
+            super(seed);
+            extra = seed + 1;
+        }
+    }
+
+    private static void assertFields(PrivateFields expected, PrivateFields actual) {
+        assertEquals(expected.z, actual.z);
+        assertEquals(expected.b, actual.b);
+        assertEquals(expected.s, actual.s);
+        assertEquals(expected.i, actual.i);
+        assertEquals(expected.l, actual.l);
+        assertEquals(expected.f, actual.f, 0.0f);
+        assertEquals(expected.d, actual.d, 0.0);
+        assertEquals(expected.c, actual.c);
+        assertEquals(expected.str, actual.str);
+        assertArrayEquals(expected.longs, actual.longs);
+        assertEquals(expected.doubles == null, actual.doubles == null);
+        if (expected.doubles != null) {
+            assertEquals(expected.doubles[0], actual.doubles[0], 0.0);
+        }
+        assertEquals(expected.list, actual.list);
+        assertEquals(expected.visible, actual.visible);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        TemplateRegistry registry = new TemplateRegistry(null);
+        Template<PrivateFields> javassist = new JavassistTemplateBuilder(registry)
+                .buildTemplate(PrivateFields.class);
+        Template<PrivateFields> reflection = new ReflectionTemplateBuilder(registry)
+                .buildTemplate(PrivateFields.class);
+
+        for (int seed = 0; seed < 3; seed++) {
+            PrivateFields src = new PrivateFields(seed);
+            BufferPacker packer = msgpack.createBufferPacker();
+            javassist.write(packer, src);
+            byte[] bytes = packer.toByteArray();
+
+            BufferPacker expected = msgpack.createBufferPacker();
+            reflection.write(expected, src);
+            assertArrayEquals(expected.toByteArray(), bytes);
+
+            BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+            PrivateFields dst = javassist.read(unpacker, null);
+            assertFields(src, dst);
+            assertEquals(bytes.length, unpacker.getReadByteCount());
+        }
+    }
+
+    @Test
+    public void testNullReferences() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        TemplateRegistry registry = new TemplateRegistry(null);
+        Template<PrivateFields> tmpl = new JavassistTemplateBuilder(registry)
+                .buildTemplate(PrivateFields.class);
+
+        PrivateFields src = new PrivateFields();
+        BufferPacker packer = msgpack.createBufferPacker();
+        tmpl.write(packer, src);
+        PrivateFields dst = tmpl.read(msgpack.createBufferUnpacker(packer.toByteArray()), null);
+        assertFields(src, dst);
+        assertNull(dst.str);
+        assertNull(dst.longs);
+    }
+
+    @Test
+    public void testInheritedPrivateFields() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        TemplateRegistry registry = new TemplateRegistry(null);
+        Template<PrivateSubclass> tmpl = new JavassistTemplateBuilder(registry)
+                .buildTemplate(PrivateSubclass.class);
+
+        PrivateSubclass src = new PrivateSubclass(5);
+        BufferPacker packer = msgpack.createBufferPacker();
+        tmpl.write(packer, src);
+        PrivateSubclass dst = new PrivateSubclass();
+        tmpl.read(msgpack.createBufferUnpacker(packer.toByteArray()), dst);
+        assertFields(src, dst);
+        assertEquals(src.extra, dst.extra);
+    }
+}
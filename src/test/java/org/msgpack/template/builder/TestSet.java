@@ -36,7 +36,7 @@ import org.msgpack.testclasses.UserDefinedTypeFieldsClassNotNullable;
 public class TestSet {
     public static byte[] toByteArray(ByteBuffer from) {
 	byte[] bytes = new byte[from.remaining()];
-	from.get(bytes, from.arrayOffset() + from.position(), from.remaining());
+	from.duplicate().get(bytes);
 	return bytes;
     }
 
@@ -44,6 +44,35 @@ public class TestBufferUnpacker {
         assertEquals(50, n);
     }
 
+    @Test
+    public void testTryReadValue() throws Exception {
+        List<Value> vs = new ArrayList<Value>();
+
+        BufferPacker pk = new MessagePack().createBufferPacker();
+        for (int i = 0; i < 50; i++) {
+            Value v = createComplexType();
+            vs.add(v);
+            pk.write(v);
+        }
+        pk.write(new byte[1000]);
+        vs.add(ValueFactory.createRawValue(new byte[1000]));
+        byte[] raw = pk.toByteArray();
+
+        int n = 0;
+        MessagePackBufferUnpacker u = new MessagePackBufferUnpacker(new MessagePack());
+        for (int i = 0; i < raw.length; i += 7) {
+            u.feed(raw, i, Math.min(7, raw.length - i));
+            while (u.tryReadValue() == UnpackStatus.VALUE_READY) {
+                assertEquals(vs.get(n), u.takeValue());
+                n++;
+            }
+            // only an incomplete header is left in the buffer
+            assertTrue(u.getBufferSize() < 9);
+        }
+        assertEquals(51, n);
+        assertEquals(UnpackStatus.NEED_MORE_INPUT, u.tryReadValue());
+    }
+
     @Test
     public void testElevenBytes() throws Exception {
         List<Value> vs = new ArrayList<Value>();
@@ -0,0 +1,135 @@
+package org.msgpack.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.packer.MessagePackPacker;
+import org.msgpack.packer.Packer;
+
+
+public class TestRawStreaming {
+    private static byte[] blob(int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void testWriteRawFromInputStream() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        for (int size : new int[] { 0, 31, 32, 65535, 65536, 100000 }) {
+            byte[] b = blob(size);
+            BufferPacker expected = msgpack.createBufferPacker();
+            expected.write(b);
+            expected.write(1);
+
+            BufferPacker packer = msgpack.createBufferPacker();
+            packer.writeRaw(new ByteArrayInputStream(b), b.length);
+            packer.write(1);
+            assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            Packer stream = msgpack.createPacker(bo);
+            stream.writeRaw(new ByteArrayInputStream(b), b.length);
+            stream.write(1);
+            stream.flush();
+            assertArrayEquals(expected.toByteArray(), bo.toByteArray());
+
+            // chunks longer than the buffer are queued by reference
+            for (int bufferSize : new int[] { 16, 8192 }) {
+                bo.reset();
+                Packer channel = new MessagePackPacker(msgpack,
+                        Channels.newChannel(bo), bufferSize);
+                channel.writeRaw(new ByteArrayInputStream(b), b.length);
+                channel.write(1);
+                channel.flush();
+                assertArrayEquals(expected.toByteArray(), bo.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteRawFromFileChannel() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] b = blob(50000);
+        File f = File.createTempFile("msgpack", ".raw");
+        f.deleteOnExit();
+        FileOutputStream fo = new FileOutputStream(f);
+        fo.write(b);
+        fo.close();
+
+        RandomAccessFile file = new RandomAccessFile(f, "r");
+        FileChannel ch = file.getChannel();
+        ch.position(10);
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeRaw(ch, b.length - 20);
+        file.close();
+
+        byte[] expected = new byte[b.length - 20];
+        System.arraycopy(b, 10, expected, 0, expected.length);
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(packer.toByteArray());
+        assertArrayEquals(expected, unpacker.readByteArray());
+    }
+
+    @Test
+    public void testReadRawTo() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] b = blob(100000);
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(b);
+        packer.write("next");
+        byte[] bytes = packer.toByteArray();
+
+        Unpacker unpacker = msgpack.createUnpacker(new ByteArrayInputStream(bytes), 1024);
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        assertEquals(b.length, unpacker.readRawTo(bo));
+        assertArrayEquals(b, bo.toByteArray());
+        assertEquals("next", unpacker.readString());
+
+        BufferUnpacker buffer = msgpack.createBufferUnpacker();
+        buffer.feed(bytes);
+        bo.reset();
+        assertEquals(b.length, buffer.readRawTo(Channels.newChannel(bo)));
+        assertArrayEquals(b, bo.toByteArray());
+        assertEquals("next", buffer.readString());
+    }
+
+    @Test
+    public void testReadRawAsInputStream() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] b = blob(20000);
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(b);
+        packer.write(b);
+        packer.write("next");
+        byte[] bytes = packer.toByteArray();
+
+        Unpacker unpacker = msgpack.createUnpacker(new ByteArrayInputStream(bytes));
+        InputStream in = unpacker.readRawAsInputStream();
+        byte[] read = new byte[b.length];
+        int off = 0;
+        while (off < read.length) {
+            off += in.read(read, off, Math.min(777, read.length - off));
+        }
+        assertEquals(-1, in.read());
+        assertArrayEquals(b, read);
+
+        // the rest of a partially read body is skipped by the next read
+        in = unpacker.readRawAsInputStream();
+        assertEquals(b[0] & 0xff, in.read());
+        assertEquals("next", unpacker.readString());
+    }
+}
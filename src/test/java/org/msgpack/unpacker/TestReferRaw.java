@@ -0,0 +1,79 @@
+package org.msgpack.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+import org.msgpack.type.RawValue;
+import org.msgpack.type.Value;
+import org.msgpack.type.ValueFactory;
+
+public class TestReferRaw {
+    @Test
+    public void testReadByteBufferRefersWrappedArray() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(new byte[] { 1, 2, 3 });
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+        ByteBuffer bb = unpacker.readByteBuffer();
+        assertTrue(bb.isReadOnly());
+        assertEquals(3, bb.remaining());
+        assertEquals((byte) 1, bb.get(0));
+
+        // the result is a view of the wrapped array
+        bytes[1] = (byte) 9;
+        assertEquals((byte) 9, bb.get(0));
+    }
+
+    @Test
+    public void testReadByteBufferCopiesFedBuffer() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(new byte[] { 1, 2, 3 });
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker();
+        unpacker.feed(bytes);
+        ByteBuffer bb = unpacker.readByteBuffer();
+        assertFalse(bb.isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), bb);
+
+        Unpacker stream = msgpack.createUnpacker(new ByteArrayInputStream(bytes));
+        assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), stream.readByteBuffer());
+    }
+
+    @Test
+    public void testRawValueDetach() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write("hello");
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+        RawValue v = unpacker.readValue().asRawValue();
+        RawValue detached = v.detach();
+        assertEquals("hello", v.getString());
+        assertEquals(ValueFactory.createRawValue("hello"), v);
+        assertEquals(ValueFactory.createRawValue("hello").hashCode(), v.hashCode());
+        assertEquals(v, detached);
+        assertTrue(detached.detach() == detached);
+
+        bytes[1] = (byte) 'j';
+        assertEquals("jello", v.getString());
+        assertEquals("hello", detached.getString());
+        assertArrayEquals("hello".getBytes("UTF-8"), detached.getByteArray());
+
+        BufferPacker repacker = msgpack.createBufferPacker();
+        repacker.write((Value) v);
+        assertArrayEquals(bytes, repacker.toByteArray());
+    }
+}
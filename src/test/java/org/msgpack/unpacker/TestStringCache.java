@@ -0,0 +1,78 @@
+package org.msgpack.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.packer.BufferPacker;
+
+
+public class TestStringCache {
+    private static final String[] STRINGS = new String[] {
+        "", "key", "あいう", "café",
+        "0123456789012345678901234567890123456789012345678901234567890123456789"
+    };
+
+    private static byte[] pack(MessagePack msgpack) throws Exception {
+        BufferPacker packer = msgpack.createBufferPacker();
+        for (int i = 0; i < 2; i++) {
+            for (String s : STRINGS) {
+                packer.write(s);
+            }
+        }
+        return packer.toByteArray();
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] bytes = pack(msgpack);
+        Unpacker[] unpackers = new Unpacker[] {
+            msgpack.createBufferUnpacker(bytes),
+            msgpack.createUnpacker(new ByteArrayInputStream(bytes), 0),
+        };
+        for (Unpacker u : unpackers) {
+            for (int i = 0; i < 2; i++) {
+                for (String s : STRINGS) {
+                    assertEquals(s, u.readString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        byte[] bytes = pack(msgpack);
+
+        BufferUnpacker u = msgpack.createBufferUnpacker(bytes);
+        u.setStringCacheSize(1024);
+        String[] first = new String[STRINGS.length];
+        for (int i = 0; i < STRINGS.length; i++) {
+            first[i] = u.readString();
+        }
+        for (int i = 0; i < STRINGS.length; i++) {
+            String s = u.readString();
+            assertEquals(STRINGS[i], s);
+            if (i < STRINGS.length - 1) {
+                assertSame(first[i], s);
+            } else {
+                // too long to be cached
+                assertNotSame(first[i], s);
+            }
+        }
+
+        // disabled by default
+        u = msgpack.createBufferUnpacker(bytes);
+        for (int i = 0; i < STRINGS.length; i++) {
+            first[i] = u.readString();
+        }
+        assertEquals("key", first[1]);
+        u.readString();
+        assertNotSame(first[1], u.readString());
+    }
+}
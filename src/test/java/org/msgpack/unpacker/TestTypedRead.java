@@ -0,0 +1,76 @@
+package org.msgpack.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.msgpack.MessagePack;
+import org.msgpack.MessageTypeException;
+import org.msgpack.packer.BufferPacker;
+
+
+public class TestTypedRead {
+    @Test
+    public void testIntegerOverflow() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(Long.MAX_VALUE);
+        packer.write(0xffffffffL);
+        packer.write(-129);
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker u = msgpack.createBufferUnpacker(bytes);
+        try {
+            u.readInt();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        // the rejected value is read again as another type
+        assertEquals(Long.MAX_VALUE, u.readLong());
+        try {
+            u.readInt();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        assertEquals(0xffffffffL, u.readLong());
+        try {
+            u.readByte();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        assertEquals((short) -129, u.readShort());
+    }
+
+    @Test
+    public void testUnexpectedType() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(1.5);
+        packer.write("str");
+        packer.writeArrayBegin(2).write(1).write(2).writeArrayEnd();
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker u = msgpack.createBufferUnpacker(bytes);
+        try {
+            u.readLong();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        assertEquals(1.5, u.readDouble(), 0.0);
+        try {
+            u.readDouble();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        assertEquals("str", u.readString());
+        try {
+            u.readMapBegin();
+            fail();
+        } catch (MessageTypeException expected) {
+        }
+        assertEquals(2, u.readArrayBegin());
+        assertEquals(1, u.readInt());
+        assertEquals(2, u.readInt());
+        u.readArrayEnd();
+    }
+}
@@ -1,6 +1,10 @@
 package org.msgpack.unpacker;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 
 import org.junit.Test;
 import org.msgpack.MessagePack;
@@ -80,4 +84,104 @@ public class TestUnpackerSkip {
             assertEquals(v2, v2a);
         }
     }
+
+    @Test
+    public void testLargeValuesFromStream() throws Exception {
+        MessagePack msgpack = new MessagePack();
+
+        BufferPacker packer = msgpack.createBufferPacker();
+        byte[] large = new byte[100000];
+        for (int i = 0; i < 10; i++) {
+            packer.writeArrayBegin(4);
+            packer.write(large);
+            packer.write(new String(new char[300]));
+            packer.writeMapBegin(2);
+            packer.write(Long.MAX_VALUE);
+            packer.write(1.0);
+            packer.write(1.0f);
+            packer.write(new int[20]);
+            packer.writeMapEnd();
+            packer.write(-70000);
+            packer.writeArrayEnd();
+            packer.write(i);
+        }
+        byte[] bytes = packer.toByteArray();
+
+        Unpacker[] unpackers = new Unpacker[] {
+                msgpack.createUnpacker(new ByteArrayInputStream(bytes)),
+                msgpack.createUnpacker(new ByteArrayInputStream(bytes), 0),
+                msgpack.createBufferUnpacker(bytes) };
+        for (Unpacker unpacker : unpackers) {
+            for (int i = 0; i < 10; i++) {
+                unpacker.skip();
+                assertEquals(i, unpacker.readInt());
+            }
+            assertEquals(bytes.length, unpacker.getReadByteCount());
+        }
+    }
+
+    @Test
+    public void testResumeAfterEndOfBuffer() throws Exception {
+        MessagePack msgpack = new MessagePack();
+
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.writeArrayBegin(3);
+        packer.write(new byte[40]);
+        packer.write(new long[] { 1L, 1L << 40 });
+        packer.write("abc");
+        packer.writeArrayEnd();
+        packer.write(7);
+        byte[] bytes = packer.toByteArray();
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker();
+        int skipped = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            unpacker.feed(bytes, i, 1);
+            if (skipped == 0) {
+                try {
+                    unpacker.skip();
+                    skipped++;
+                } catch (EOFException e) {
+                }
+            }
+        }
+        assertEquals(1, skipped);
+        assertEquals(7, unpacker.readInt());
+    }
+
+    @Test
+    public void testSizeLimits() throws Exception {
+        MessagePack msgpack = new MessagePack();
+        BufferPacker packer = msgpack.createBufferPacker();
+        packer.write(new byte[40]);
+        packer.write(new int[20]);
+        packer.writeMapBegin(20);
+        for (int i = 0; i < 20; i++) {
+            packer.write(i);
+            packer.write(i);
+        }
+        packer.writeMapEnd();
+        byte[] bytes = packer.toByteArray();
+
+        for (int i = 0; i < 3; i++) {
+            BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+            unpacker.setRawSizeLimit(i == 0 ? 32 : 100);
+            unpacker.setArraySizeLimit(i == 1 ? 16 : 100);
+            unpacker.setMapSizeLimit(i == 2 ? 16 : 100);
+            for (int j = 0; j < i; j++) {
+                unpacker.skip();
+            }
+            try {
+                unpacker.skip();
+                fail();
+            } catch (SizeLimitException e) {
+            }
+        }
+
+        BufferUnpacker unpacker = msgpack.createBufferUnpacker(bytes);
+        for (int i = 0; i < 3; i++) {
+            unpacker.skip();
+        }
+        assertEquals(bytes.length, unpacker.getReadByteCount());
+    }
 }